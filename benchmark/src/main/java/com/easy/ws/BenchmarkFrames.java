@@ -0,0 +1,35 @@
+package com.easy.ws;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 基准测试使用的客户端数据帧（客户端发送的帧必须带掩码）
+ *
+ * @author Ray
+ * @date created in 2021/8/19 20:10
+ */
+final class BenchmarkFrames {
+
+    private BenchmarkFrames() {
+    }
+
+    static byte[] randomBytes(int size) {
+        byte[] bytes = new byte[size];
+        ThreadLocalRandom.current().nextBytes(bytes);
+        return bytes;
+    }
+
+    /**
+     * 编码一个带掩码的完整帧
+     */
+    static ByteBuffer maskedFrame(FrameType frameType, byte[] payload, boolean direct) {
+        ByteBuffer frame = FrameEncoder.encodeMasked(frameType, ByteBuffer.wrap(payload),
+                ThreadLocalRandom.current().nextInt());
+        if (!direct) {
+            return frame;
+        }
+        return ByteBuffer.allocateDirect(frame.remaining()).put(frame).flip();
+    }
+
+}
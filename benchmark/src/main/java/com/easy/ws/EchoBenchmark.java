@@ -0,0 +1,184 @@
+package com.easy.ws;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 本机回环的端到端 echo：clients 个 NIO 客户端每轮各发送一条消息，再依次读取回显。
+ * messages 为每秒回显的消息数，p99 延迟在每次 trial 结束时输出。
+ * transport 为传输层名称，classpath 中有其它 WsTransport 实现时可以对比，例如 -p transport=nio,epoll
+ *
+ * @author Ray
+ * @date created in 2021/8/19 21:00
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EchoBenchmark {
+
+    @Param({"1", "4"})
+    private int workers;
+
+    @Param({"64", "4096"})
+    private int payloadSize;
+
+    @Param({"16"})
+    private int clients;
+
+    @Param({NioTransport.NAME})
+    private String transport;
+
+    private WsServer server;
+    private SocketChannel[] channels;
+    private ByteBuffer frame;
+    private ByteBuffer response;
+    private long[] sendNanos;
+    private LatencyHistogram latency;
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Counters {
+
+        public long messages;
+
+    }
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        int port;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+
+        server = new WsServer(port);
+        server.getConfig().setWorkerNum(workers);
+        server.getConfig().setTransport(transport);
+        server.getConfig().setPingIntervalMillis(0);
+        server.setWsCallback(new WsCallback() {
+            @Override
+            public void onOpen(WsContext context) {
+            }
+
+            @Override
+            public WsPayload onMessage(WsContext context, WsPayload wsPayload) {
+                return wsPayload;
+            }
+
+            @Override
+            public void onClose(WsContext context) {
+            }
+        });
+        Thread thread = new Thread(() -> {
+            try {
+                server.start();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }, "echo-server");
+        thread.setDaemon(true);
+        thread.start();
+
+        channels = new SocketChannel[clients];
+        for (int i = 0; i < clients; i++) {
+            channels[i] = connect(port);
+        }
+        frame = BenchmarkFrames.maskedFrame(FrameType.BINARY, BenchmarkFrames.randomBytes(payloadSize), true);
+        response = ByteBuffer.allocateDirect(FrameEncoder.headerLength(payloadSize) + payloadSize);
+        sendNanos = new long[clients];
+        latency = new LatencyHistogram();
+    }
+
+    static SocketChannel connect(int port) throws Exception {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (true) {
+            try {
+                SocketChannel channel = SocketChannel.open(new InetSocketAddress("127.0.0.1", port));
+                channel.socket().setTcpNoDelay(true);
+                handshake(channel);
+                return channel;
+            } catch (IOException e) {
+                // 服务还没有启动
+                if (System.nanoTime() > deadline) {
+                    throw e;
+                }
+                Thread.sleep(50);
+            }
+        }
+    }
+
+    private static void handshake(SocketChannel channel) throws IOException {
+        String request = "GET / HTTP/1.1\r\nHost: localhost\r\nUpgrade: websocket\r\nConnection: Upgrade\r\n"
+                + "Sec-WebSocket-Key: dGhlIHNhbXBsZSBub25jZQ==\r\nSec-WebSocket-Version: 13\r\n\r\n";
+        channel.write(ByteBuffer.wrap(request.getBytes(StandardCharsets.US_ASCII)));
+
+        // 读取到 \r\n\r\n 为止，服务端在收到第一条消息之前不会发送其它数据
+        ByteBuffer one = ByteBuffer.allocate(1);
+        int matched = 0;
+        while (matched < 4) {
+            one.clear();
+            if (channel.read(one) < 0) {
+                throw new IOException("connection closed during handshake");
+            }
+            byte b = one.get(0);
+            matched = b == (matched % 2 == 0 ? '\r' : '\n') ? matched + 1 : (b == '\r' ? 1 : 0);
+        }
+    }
+
+    @Benchmark
+    public void echo(Counters counters) throws IOException {
+        for (int i = 0; i < clients; i++) {
+            ByteBuffer data = frame.duplicate();
+            sendNanos[i] = System.nanoTime();
+            while (data.hasRemaining()) {
+                channels[i].write(data);
+            }
+        }
+        for (int i = 0; i < clients; i++) {
+            response.clear();
+            while (response.hasRemaining()) {
+                if (channels[i].read(response) < 0) {
+                    throw new IOException("connection closed");
+                }
+            }
+            latency.record(System.nanoTime() - sendNanos[i]);
+        }
+        counters.messages += clients;
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        LatencyHistogram.Snapshot snapshot = latency.snapshot();
+        System.out.printf("%ntransport=%s, workers=%d, payloadSize=%d, clients=%d, latency(us): p50=%.1f, p99=%.1f, "
+                        + "max=%.1f%n", server.getTransport(), workers, payloadSize, clients,
+                snapshot.getValueAtPercentile(50) / 1000.0,
+                snapshot.getValueAtPercentile(99) / 1000.0, snapshot.getMax() / 1000.0);
+        for (SocketChannel channel : channels) {
+            channel.close();
+        }
+        server.close();
+    }
+
+}
@@ -0,0 +1,94 @@
+package com.easy.ws;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 数据帧解码（包括去掉掩码）和编码，覆盖 7 位、16 位、64 位三种长度编码
+ *
+ * @author Ray
+ * @date created in 2021/8/19 20:20
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FrameCodecBenchmark {
+
+    @Param({"125", "65535", "1048576"})
+    private int payloadSize;
+
+    private ByteBuffer maskedFrame;
+    private ByteBuffer payload;
+    private ByteBuffer header;
+    private int key;
+    private FrameDecoder decoder;
+    private FrameDecoder.FrameListener listener;
+
+    @Setup
+    public void setup(Blackhole blackhole) {
+        byte[] data = BenchmarkFrames.randomBytes(payloadSize);
+        maskedFrame = BenchmarkFrames.maskedFrame(FrameType.BINARY, data, true);
+        payload = ByteBuffer.allocateDirect(payloadSize).put(data).flip();
+        header = ByteBuffer.allocate(FrameEncoder.MAX_HEADER_LENGTH);
+        key = ThreadLocalRandom.current().nextInt();
+        decoder = new FrameDecoder(Integer.MAX_VALUE);
+        listener = (fin, rsv, frameType, framePayload) -> blackhole.consume(framePayload);
+    }
+
+    /**
+     * 解析帧头并原地去掉掩码（每次解码都会翻转一次掩码，不影响耗时）
+     */
+    @Benchmark
+    public void decode() throws IOException {
+        maskedFrame.clear();
+        decoder.decode(maskedFrame, listener);
+    }
+
+    @Benchmark
+    public ByteBuffer unmask() {
+        Masking.mask(payload, 0, payloadSize, key);
+        return payload;
+    }
+
+    /**
+     * 客户端编码：拷贝消息体并加上掩码
+     */
+    @Benchmark
+    public ByteBuffer encodeMasked() {
+        return FrameEncoder.encodeMasked(FrameType.BINARY, payload, key);
+    }
+
+    @Benchmark
+    public ByteBuffer encodeHeader() {
+        header.clear();
+        FrameEncoder.writeHeader(header, true, 0, FrameType.BINARY, payloadSize);
+        return header;
+    }
+
+    /**
+     * 广播时使用的整帧编码（分配直接内存并拷贝消息体）
+     */
+    @Benchmark
+    public ByteBuffer encode() {
+        return FrameEncoder.encode(FrameType.BINARY, payload, 0);
+    }
+
+}
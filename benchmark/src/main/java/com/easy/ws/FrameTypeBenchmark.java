@@ -0,0 +1,41 @@
+package com.easy.ws;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 解析所有 16 个 opcode
+ *
+ * @author Ray
+ * @date created in 2021/8/19 20:50
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FrameTypeBenchmark {
+
+    private static final int OP_CODES = 16;
+
+    @Benchmark
+    @OperationsPerInvocation(OP_CODES)
+    public void parseFrame(Blackhole blackhole) {
+        for (int opCode = 0; opCode < OP_CODES; opCode++) {
+            blackhole.consume(FrameType.parseFrame(opCode));
+        }
+    }
+
+}
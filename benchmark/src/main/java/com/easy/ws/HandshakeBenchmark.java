@@ -0,0 +1,55 @@
+package com.easy.ws;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 握手：解析请求头、计算 Sec-WebSocket-Accept、生成 101 响应
+ *
+ * @author Ray
+ * @date created in 2021/8/19 20:40
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HandshakeBenchmark {
+
+    private static final String KEY = "dGhlIHNhbXBsZSBub25jZQ==";
+
+    private final ByteBuffer request = ByteBuffer.wrap(("GET /chat HTTP/1.1\r\n"
+            + "Host: server.example.com\r\n"
+            + "User-Agent: Mozilla/5.0 (X11; Linux x86_64) AppleWebKit/537.36 (KHTML, like Gecko)\r\n"
+            + "Upgrade: websocket\r\n"
+            + "Connection: Upgrade\r\n"
+            + "Sec-WebSocket-Key: " + KEY + "\r\n"
+            + "Origin: http://example.com\r\n"
+            + "Sec-WebSocket-Extensions: permessage-deflate; client_max_window_bits\r\n"
+            + "Sec-WebSocket-Version: 13\r\n\r\n").getBytes(StandardCharsets.US_ASCII));
+
+    @Benchmark
+    public String secWebSocketAccept() {
+        return HandshakeParser.getSecWebSocketAccept(KEY);
+    }
+
+    @Benchmark
+    public String parseAndRespond() throws HandshakeException {
+        HandshakeParser parser = new HandshakeParser();
+        parser.parse(request.duplicate());
+        return parser.response();
+    }
+
+}
@@ -0,0 +1,105 @@
+package com.easy.ws;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Pipe;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * 事件循环中一轮 select 的开销：WorkerThread 使用的 select(Consumer) 与 selectedKeys 迭代器的对比。
+ * 每次调用向 pipe 写入一个字节，select 之后读出。需要配合 -prof gc 运行，
+ * select(Consumer) 和 selectNow(Consumer) 的 gc.alloc.rate.norm 应该接近 0 B/op
+ *
+ * @author Ray
+ * @date created in 2021/8/22 20:40
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SelectorLoopBenchmark {
+
+    private Selector selector;
+    private Pipe pipe;
+    private final ByteBuffer writeBuffer = ByteBuffer.allocateDirect(1);
+    private final ByteBuffer readBuffer = ByteBuffer.allocateDirect(64);
+    private final Consumer<SelectionKey> handler = this::onReadable;
+    private int events;
+
+    @Setup
+    public void setup() throws IOException {
+        selector = Selector.open();
+        pipe = Pipe.open();
+        pipe.source().configureBlocking(false);
+        pipe.source().register(selector, SelectionKey.OP_READ);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        selector.close();
+        pipe.sink().close();
+        pipe.source().close();
+    }
+
+    @Benchmark
+    public int selectConsumer() throws IOException {
+        write();
+        selector.select(handler);
+        return events;
+    }
+
+    @Benchmark
+    public int selectedKeysIterator() throws IOException {
+        write();
+        selector.select();
+        Iterator<SelectionKey> iterator = selector.selectedKeys().iterator();
+        while (iterator.hasNext()) {
+            SelectionKey selectionKey = iterator.next();
+            iterator.remove();
+            onReadable(selectionKey);
+        }
+        return events;
+    }
+
+    /**
+     * WaitStrategy.SPIN 空闲时每次轮询的开销
+     */
+    @Benchmark
+    public int selectNowIdle() throws IOException {
+        return selector.selectNow(handler);
+    }
+
+    private void write() throws IOException {
+        writeBuffer.clear();
+        pipe.sink().write(writeBuffer);
+    }
+
+    private void onReadable(SelectionKey selectionKey) {
+        try {
+            readBuffer.clear();
+            ((Pipe.SourceChannel) selectionKey.channel()).read(readBuffer);
+            events++;
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+}
@@ -0,0 +1,86 @@
+package com.easy.ws;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 文本消息的 UTF-8 校验：去掉掩码时同时校验、单独校验，以及 JDK CharsetDecoder 解码作为对比
+ *
+ * @author Ray
+ * @date created in 2021/8/21 17:20
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class Utf8Benchmark {
+
+    @Param({"125", "65535"})
+    private int payloadSize;
+
+    // ascii：纯 ASCII；mixed：包含中文等多字节字符
+    @Param({"ascii", "mixed"})
+    private String text;
+
+    private ByteBuffer payload;
+    private int key;
+    private final Utf8Validator validator = new Utf8Validator();
+    private final CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder();
+    private CharBuffer chars;
+
+    @Setup
+    public void setup() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        StringBuilder sb = new StringBuilder();
+        while (sb.toString().getBytes(StandardCharsets.UTF_8).length < payloadSize) {
+            sb.append("ascii".equals(text) || random.nextInt(8) != 0 ? (char) ('a' + random.nextInt(26)) : '文');
+        }
+        byte[] data = sb.toString().getBytes(StandardCharsets.UTF_8);
+        payload = ByteBuffer.allocateDirect(data.length).put(data).flip();
+        key = random.nextInt();
+        chars = CharBuffer.allocate(data.length);
+    }
+
+    /**
+     * 解码文本帧时的实际路径：去掉掩码并校验（每次调用翻转一次掩码，校验的内容在明文和密文之间交替）
+     */
+    @Benchmark
+    public boolean unmaskUtf8() {
+        validator.reset();
+        return Masking.unmaskUtf8(payload, 0, payload.limit(), key, validator);
+    }
+
+    @Benchmark
+    public boolean validate() {
+        validator.reset();
+        return validator.update(payload, 0, payload.limit()) && validator.isComplete();
+    }
+
+    @Benchmark
+    public CharBuffer jdkDecode() throws CharacterCodingException {
+        chars.clear();
+        decoder.reset();
+        decoder.decode(payload.duplicate(), chars, true);
+        return chars;
+    }
+
+}
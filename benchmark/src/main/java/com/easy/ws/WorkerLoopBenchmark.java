@@ -0,0 +1,141 @@
+package com.easy.ws;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.net.ServerSocket;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 真实 WorkerThread 事件循环（select / spin、任务队列、时间轮）的分配情况，需要配合 -prof gc 运行。
+ * idle：一个连接、没有消息，worker 空转；echo：单个客户端逐条回显，每次操作为一次往返。
+ * gc.alloc.rate.norm 统计的是所有线程，每轮 iteration 结束时另外输出 worker 线程自己分配的字节数
+ *
+ * @author Ray
+ * @date created in 2021/8/23 21:30
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class WorkerLoopBenchmark {
+
+    @Param({"BLOCK", "SPIN"})
+    private WaitStrategy waitStrategy;
+
+    @Param({"64"})
+    private int payloadSize;
+
+    private WsServer server;
+    private SocketChannel channel;
+    private ByteBuffer frame;
+    private ByteBuffer response;
+    private volatile Thread worker;
+    private com.sun.management.ThreadMXBean threadBean;
+    private long workerBytes;
+    private long ops;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        int port;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+
+        server = new WsServer(port);
+        server.getConfig().setWorkerNum(1);
+        server.getConfig().setWaitStrategy(waitStrategy);
+        server.getConfig().setPingIntervalMillis(0);
+        server.setWsCallback(new WsCallback() {
+            @Override
+            public void onOpen(WsContext context) {
+                // 没有配置回调线程池，onOpen 在 worker 线程上执行
+                worker = Thread.currentThread();
+            }
+
+            @Override
+            public WsPayload onMessage(WsContext context, WsPayload wsPayload) {
+                return wsPayload;
+            }
+
+            @Override
+            public void onClose(WsContext context) {
+            }
+        });
+        Thread thread = new Thread(() -> {
+            try {
+                server.start();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }, "worker-loop-server");
+        thread.setDaemon(true);
+        thread.start();
+
+        channel = EchoBenchmark.connect(port);
+        frame = BenchmarkFrames.maskedFrame(FrameType.BINARY, BenchmarkFrames.randomBytes(payloadSize), true);
+        response = ByteBuffer.allocateDirect(FrameEncoder.headerLength(payloadSize) + payloadSize);
+        threadBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        while (worker == null) {
+            Thread.sleep(1);
+        }
+    }
+
+    @Setup(Level.Iteration)
+    public void startIteration() {
+        ops = 0;
+        workerBytes = threadBean.getThreadAllocatedBytes(worker.getId());
+    }
+
+    @Benchmark
+    public void idle() throws InterruptedException {
+        Thread.sleep(1);
+        ops++;
+    }
+
+    @Benchmark
+    public void echo() throws IOException {
+        ByteBuffer data = frame.duplicate();
+        while (data.hasRemaining()) {
+            channel.write(data);
+        }
+        response.clear();
+        while (response.hasRemaining()) {
+            if (channel.read(response) < 0) {
+                throw new IOException("connection closed");
+            }
+        }
+        ops++;
+    }
+
+    @TearDown(Level.Iteration)
+    public void endIteration() {
+        long allocated = threadBean.getThreadAllocatedBytes(worker.getId()) - workerBytes;
+        System.out.printf("%nworker allocated %d bytes in %d ops (%.1f B/op)%n", allocated, ops,
+                ops == 0 ? 0.0 : (double) allocated / ops);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        channel.close();
+        server.close();
+    }
+
+}
@@ -0,0 +1,114 @@
+package com.easy.ws;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 接收连接的线程，每个线程一个事件循环。
+ * 开启 SO_REUSEPORT 时每个线程监听自己的 ServerSocketChannel，由内核分配连接；否则共享同一个 ServerSocketChannel
+ *
+ * @author Ray
+ * @date created in 2021/8/17 20:30
+ */
+public class AcceptorThread extends Thread {
+
+    private static final Logger logger = LoggerFactory.getLogger(AcceptorThread.class);
+    public static final AtomicInteger COUNTER = new AtomicInteger();
+    // 一次 OP_ACCEPT 事件最多接收的连接数，避免一直接收连接
+    private static final int MAX_ACCEPTS_PER_SELECT = 64;
+    // accept 失败（例如文件描述符耗尽）后暂停接收连接的时间
+    private static final long ACCEPT_BACKOFF_MILLIS = 100;
+
+    private final WsServer wsServer;
+    private final ServerSocketChannel serverSocketChannel;
+    // 共享的 ServerSocketChannel 由 WsServer 关闭
+    private final boolean ownChannel;
+    private final WsEventLoop eventLoop;
+    private final WsEventLoop.Registration acceptRegistration;
+    // 暂停接收连接时恢复的时间
+    private long resumeAcceptNanos;
+    private volatile boolean running = true;
+    // 复用同一个回调，poll 时不产生垃圾
+    private final WsEventLoop.Handler acceptHandler = this::onAcceptable;
+
+    public AcceptorThread(WsServer wsServer, WsTransport transport, ServerSocketChannel serverSocketChannel,
+                          boolean ownChannel) throws IOException {
+        super.setName("acceptor-thread-" + COUNTER.getAndIncrement());
+        this.wsServer = wsServer;
+        this.serverSocketChannel = serverSocketChannel;
+        this.ownChannel = ownChannel;
+        this.eventLoop = transport.openEventLoop();
+        this.acceptRegistration = eventLoop.register(serverSocketChannel, WsEventLoop.OP_ACCEPT, serverSocketChannel);
+    }
+
+    public ServerSocketChannel getServerSocketChannel() {
+        return this.serverSocketChannel;
+    }
+
+    public void close() {
+        this.running = false;
+        this.eventLoop.wakeup();
+    }
+
+    @Override
+    public void run() {
+        try {
+            while (running) {
+                if (acceptRegistration.interestOps() == 0) {
+                    long waitMillis = TimeUnit.NANOSECONDS.toMillis(resumeAcceptNanos - System.nanoTime());
+                    if (waitMillis > 0) {
+                        eventLoop.poll(acceptHandler, waitMillis);
+                        continue;
+                    }
+                    acceptRegistration.interestOps(WsEventLoop.OP_ACCEPT);
+                }
+                eventLoop.poll(acceptHandler, 0);
+            }
+        } catch (IOException e) {
+            logger.error("{} poll failed", getName(), e);
+        } finally {
+            try {
+                eventLoop.close();
+                if (ownChannel) {
+                    serverSocketChannel.close();
+                }
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    private void onAcceptable(WsEventLoop.Registration registration, int readyOps) {
+        if ((readyOps & WsEventLoop.OP_ACCEPT) != 0) {
+            accept((ServerSocketChannel) registration.attachment());
+        }
+    }
+
+    private void accept(ServerSocketChannel ssc) {
+        for (int i = 0; i < MAX_ACCEPTS_PER_SELECT; i++) {
+            SocketChannel socketChannel;
+            try {
+                // 共享 ServerSocketChannel 时其它线程可能已经接收了该连接，返回 null
+                socketChannel = ssc.accept();
+            } catch (IOException e) {
+                // 例如文件描述符耗尽：连接还在队列中，会一直就绪，暂停一段时间再接收，避免空转
+                logger.warn("{} accept failed, pause accepting for {} ms: {}", getName(), ACCEPT_BACKOFF_MILLIS,
+                        e.getMessage());
+                acceptRegistration.interestOps(0);
+                resumeAcceptNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(ACCEPT_BACKOFF_MILLIS);
+                return;
+            }
+            if (socketChannel == null) {
+                return;
+            }
+            wsServer.onAccept(socketChannel);
+        }
+    }
+
+}
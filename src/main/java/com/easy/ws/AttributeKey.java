@@ -0,0 +1,41 @@
+package com.easy.ws;
+
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * 连接属性的 key，同名的 key 是同一个实例，可以作为常量定义：
+ * <pre>
+ * static final AttributeKey&lt;String&gt; USER_ID = AttributeKey.valueOf("userId");
+ * </pre>
+ *
+ * @author Ray
+ * @date created in 2021/8/20 20:15
+ */
+public final class AttributeKey<T> {
+
+    private static final ConcurrentMap<String, AttributeKey<?>> KEYS = new ConcurrentHashMap<>();
+
+    private final String name;
+
+    private AttributeKey(String name) {
+        this.name = name;
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <T> AttributeKey<T> valueOf(String name) {
+        Objects.requireNonNull(name, "name is empty");
+        return (AttributeKey<T>) KEYS.computeIfAbsent(name, AttributeKey::new);
+    }
+
+    public String getName() {
+        return this.name;
+    }
+
+    @Override
+    public String toString() {
+        return "AttributeKey{" + this.name + "}";
+    }
+
+}
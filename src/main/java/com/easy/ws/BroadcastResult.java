@@ -0,0 +1,33 @@
+package com.easy.ws;
+
+/**
+ * 广播结果：scheduled 为已经提交给所属 WorkerThread 写入的连接数（提交之后关闭的连接不会再发送），
+ * skipped 为被过滤、已关闭或不可写而跳过的连接数
+ *
+ * @author Ray
+ * @date created in 2021/8/9 21:05
+ */
+public class BroadcastResult {
+
+    private final int scheduled;
+    private final int skipped;
+
+    public BroadcastResult(int scheduled, int skipped) {
+        this.scheduled = scheduled;
+        this.skipped = skipped;
+    }
+
+    public int getScheduled() {
+        return this.scheduled;
+    }
+
+    public int getSkipped() {
+        return this.skipped;
+    }
+
+    @Override
+    public String toString() {
+        return "BroadcastResult{scheduled=" + scheduled + ", skipped=" + skipped + '}';
+    }
+
+}
@@ -0,0 +1,54 @@
+package com.easy.ws;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+
+/**
+ * 广播消息：消息只编码、压缩一次（已经是 {@link PreparedWsPayload} 时直接使用），所有连接共享同一个只读 buffer；
+ * 按 WorkerThread 分组后每个 WorkerThread 只提交一个任务，在一次任务中完成所有连接的写入
+ *
+ * @author Ray
+ * @date created in 2021/8/9 21:10
+ */
+class Broadcaster {
+
+    private Broadcaster() {
+    }
+
+    static BroadcastResult broadcast(Iterable<? extends WsContext> contexts, WsPayload wsPayload,
+                                     Predicate<WsContext> filter, WsConfig config) {
+        // 与 WsServer#prepare 一样按配置额外压缩一次；只发送一次的消息编码到堆内存，不为每次广播分配直接内存
+        PreparedWsPayload prepared = wsPayload instanceof PreparedWsPayload ? (PreparedWsPayload) wsPayload
+                : new PreparedWsPayload(wsPayload, config.getFragmentSize(), config.getPerMessageDeflate(), false);
+
+        int scheduled = 0;
+        int skipped = 0;
+        Map<WorkerThread, List<WsContextImpl>> batches = new HashMap<>();
+        for (WsContext context : contexts) {
+            // 跳过已关闭以及超过高水位的慢连接，避免堆积
+            if (!(context instanceof WsContextImpl) || !context.getSocketChannel().isOpen()
+                    || !context.isWritable() || (filter != null && !filter.test(context))) {
+                skipped++;
+                continue;
+            }
+
+            batches.computeIfAbsent(context.getWorkerThread(), k -> new ArrayList<>()).add((WsContextImpl) context);
+            scheduled++;
+        }
+
+        batches.forEach((workerThread, targets) -> workerThread.execute(() -> {
+            for (WsContextImpl target : targets) {
+                target.enqueuePrepared(prepared);
+            }
+            for (WsContextImpl target : targets) {
+                target.flushOrClose();
+            }
+        }));
+
+        return new BroadcastResult(scheduled, skipped);
+    }
+
+}
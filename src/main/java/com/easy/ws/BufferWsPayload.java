@@ -0,0 +1,87 @@
+package com.easy.ws;
+
+import java.nio.ByteBuffer;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 基于 ByteBuffer 的消息，接收到的消息直接引用读缓冲区中解码后的数据，不做拷贝。
+ * 消息只在回调期间有效，需要在回调之外使用时先调用 {@link #retain()}，用完后调用 {@link #release()}。
+ *
+ * @author Ray
+ * @date created in 2021/8/8 10:35
+ */
+public class BufferWsPayload implements WsPayload {
+
+    private final FrameType frameType;
+    private final ByteBuffer buffer;
+    private final RefCountedBuffer owner;
+    private final AtomicInteger refCnt = new AtomicInteger(1);
+    private byte[] data;
+
+    public BufferWsPayload(FrameType frameType, ByteBuffer buffer) {
+        this(frameType, buffer, null);
+    }
+
+    BufferWsPayload(FrameType frameType, ByteBuffer buffer, RefCountedBuffer owner) {
+        Objects.requireNonNull(frameType, "frameType is empty");
+        Objects.requireNonNull(buffer, "buffer is empty");
+
+        this.frameType = frameType;
+        this.buffer = buffer.asReadOnlyBuffer();
+        this.owner = owner;
+        if (owner != null) {
+            owner.retain();
+        }
+    }
+
+    @Override
+    public FrameType getFrameType() {
+        return this.frameType;
+    }
+
+    /**
+     * 第一次调用时拷贝出 byte[] 并缓存
+     */
+    @Override
+    public byte[] getData() {
+        if (this.data == null) {
+            byte[] bytes = new byte[this.buffer.remaining()];
+            this.buffer.duplicate().get(bytes);
+            this.data = bytes;
+        }
+        return this.data;
+    }
+
+    @Override
+    public ByteBuffer getBuffer() {
+        return this.buffer.duplicate();
+    }
+
+    @Override
+    public long getDataLength() {
+        return this.buffer.remaining();
+    }
+
+    @Override
+    public WsPayload retain() {
+        if (this.refCnt.getAndIncrement() <= 0) {
+            throw new IllegalStateException("payload already released");
+        }
+        return this;
+    }
+
+    @Override
+    public boolean release() {
+        int cnt = this.refCnt.decrementAndGet();
+        if (cnt < 0) {
+            throw new IllegalStateException("payload already released");
+        }
+        if (cnt == 0 && this.owner != null) {
+            this.owner.release();
+            return true;
+        }
+        return cnt == 0;
+    }
+
+}
@@ -0,0 +1,37 @@
+package com.easy.ws;
+
+import java.nio.ByteBuffer;
+
+/**
+ * ByteBuffer 分配器，读取数据、握手以及帧头都通过它申请 buffer，用完之后归还
+ *
+ * @author Ray
+ * @date created in 2021/8/7 15:20
+ */
+public interface ByteBufferAllocator {
+
+    /**
+     * 申请一个容量至少为 capacity 的 buffer，position 为 0，limit 为 capacity
+     */
+    ByteBuffer allocate(int capacity);
+
+    /**
+     * 归还 buffer，归还之后不能再使用
+     */
+    void release(ByteBuffer buffer);
+
+    /**
+     * 已经申请、尚未归还的字节数
+     */
+    default long getUsedBytes() {
+        return 0;
+    }
+
+    /**
+     * 池中缓存、可以复用的字节数
+     */
+    default long getPooledBytes() {
+        return 0;
+    }
+
+}
@@ -0,0 +1,41 @@
+package com.easy.ws;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * 常用的回调线程池
+ *
+ * @author Ray
+ * @date created in 2021/8/14 15:40
+ */
+public class CallbackExecutors {
+
+    private CallbackExecutors() {
+    }
+
+    /**
+     * 每个任务一个虚拟线程，需要 Java 21 及以上版本
+     */
+    public static ExecutorService newVirtualThreadPerTaskExecutor() {
+        try {
+            // 项目以 Java 11 编译，通过反射调用
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (NoSuchMethodException e) {
+            throw new UnsupportedOperationException("virtual threads require Java 21 or later");
+        } catch (IllegalAccessException | InvocationTargetException e) {
+            throw new IllegalStateException("create virtual thread executor failed", e);
+        }
+    }
+
+    public static boolean isVirtualThreadSupported() {
+        try {
+            Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return true;
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+
+}
@@ -0,0 +1,28 @@
+package com.easy.ws;
+
+/**
+ * 连接关闭的原因，用于统计
+ *
+ * @author Ray
+ * @date created in 2021/8/18 20:30
+ */
+public enum CloseReason {
+
+    // 客户端发起的 close 握手
+    CLIENT_CLOSE,
+    // 客户端直接断开 TCP 连接
+    EOF,
+    // 读写失败
+    IO_ERROR,
+    // 客户端发送了不合法的数据帧
+    PROTOCOL_ERROR,
+    HANDSHAKE_FAILED,
+    HANDSHAKE_TIMEOUT,
+    PONG_TIMEOUT,
+    IDLE_TIMEOUT,
+    // 服务端主动关闭，例如调用 WsContext#close()、WsServer 停止
+    SERVER_CLOSE,
+    // 回调抛出异常等服务端内部错误
+    INTERNAL_ERROR
+
+}
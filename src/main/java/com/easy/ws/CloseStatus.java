@@ -0,0 +1,38 @@
+package com.easy.ws;
+
+/**
+ * close 帧的状态码
+ * https://datatracker.ietf.org/doc/html/rfc6455#section-7.4
+ *
+ * @author Ray
+ * @date created in 2021/8/21 15:10
+ */
+public final class CloseStatus {
+
+    public static final int NORMAL = 1000;
+    public static final int GOING_AWAY = 1001;
+    public static final int PROTOCOL_ERROR = 1002;
+    public static final int UNSUPPORTED_DATA = 1003;
+    // 以下两个状态码不能出现在 close 帧中：对端没有发送状态码、连接异常断开（没有收到 close 帧）
+    public static final int NO_STATUS = 1005;
+    public static final int ABNORMAL = 1006;
+    public static final int INVALID_PAYLOAD = 1007;
+    public static final int POLICY_VIOLATION = 1008;
+    public static final int MESSAGE_TOO_BIG = 1009;
+    public static final int MANDATORY_EXTENSION = 1010;
+    public static final int INTERNAL_ERROR = 1011;
+
+    // close 帧的 payload 最多 125 字节，去掉 2 字节状态码
+    public static final int MAX_REASON_LENGTH = 123;
+
+    private CloseStatus() {
+    }
+
+    /**
+     * 状态码是否可以出现在 close 帧中
+     */
+    public static boolean isValid(int code) {
+        return code >= 1000 && code <= 1003 || code >= 1007 && code <= 1011 || code >= 3000 && code <= 4999;
+    }
+
+}
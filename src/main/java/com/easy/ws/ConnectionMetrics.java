@@ -0,0 +1,48 @@
+package com.easy.ws;
+
+/**
+ * 单个连接的统计，只由所属的 WorkerThread 更新，其它线程读取到的是近似值
+ *
+ * @author Ray
+ * @date created in 2021/8/18 20:40
+ */
+public class ConnectionMetrics {
+
+    private long messagesIn;
+    private long messagesOut;
+    private long bytesIn;
+    private long bytesOut;
+
+    void recordMessageIn() {
+        messagesIn++;
+    }
+
+    void recordMessageOut() {
+        messagesOut++;
+    }
+
+    void recordBytesIn(long bytes) {
+        bytesIn += bytes;
+    }
+
+    void recordBytesOut(long bytes) {
+        bytesOut += bytes;
+    }
+
+    public long getMessagesIn() {
+        return this.messagesIn;
+    }
+
+    public long getMessagesOut() {
+        return this.messagesOut;
+    }
+
+    public long getBytesIn() {
+        return this.bytesIn;
+    }
+
+    public long getBytesOut() {
+        return this.bytesOut;
+    }
+
+}
@@ -0,0 +1,169 @@
+package com.easy.ws;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * 增量解析 ws 数据帧，每个连接持有一个实例。
+ * 半包时保存解析状态等待下一次读取，粘包时循环解析出所有完整的帧。
+ * 消息体在读缓冲区中原地解码，以切片的形式交给 FrameListener，不做拷贝。
+ * 未压缩的文本消息在去掉掩码时同时校验 UTF-8，校验状态跨分片保留，非法时以 1007 关闭连接。
+ * https://datatracker.ietf.org/doc/html/rfc6455#section-5.2
+ *
+ * @author Ray
+ * @date created in 2021/8/5 21:10
+ */
+public class FrameDecoder {
+
+    enum State {
+        HEADER,
+        EXTENDED_LENGTH,
+        MASKING_KEY,
+        PAYLOAD
+    }
+
+    public interface FrameListener {
+
+        /**
+         * payload 是读缓冲区中已经解码的切片，只在回调期间有效
+         */
+        void onFrame(boolean fin, int rsv, FrameType frameType, ByteBuffer payload) throws IOException;
+
+    }
+
+    private State state = State.HEADER;
+    private boolean fin;
+    private int rsv;
+    private int opCode;
+    private boolean masked;
+    private int extendedLengthBytes;
+    private long payloadLength;
+    // 大端序的 masking key
+    private int maskingKey;
+    private final int maxFramePayloadLength;
+    // 当前消息是否为需要校验的文本消息（压缩的文本消息在解压后校验）
+    private boolean validatingText;
+    private final Utf8Validator utf8Validator = new Utf8Validator();
+
+    public FrameDecoder(int maxFramePayloadLength) {
+        this.maxFramePayloadLength = maxFramePayloadLength;
+    }
+
+    /**
+     * 当前帧的消息体长度，整个消息体到达之后才会解码，读缓冲区最终需要容纳整个消息体。
+     * 调用方按实际收到的数据逐步扩容，该值只作为扩容的上限
+     */
+    public int getRequiredCapacity() {
+        return state == State.PAYLOAD ? (int) payloadLength : 0;
+    }
+
+    /**
+     * 解析 buffer 中所有完整的帧，不完整的部分保留在 buffer 中（position 停在未消费的位置）
+     */
+    public void decode(ByteBuffer in, FrameListener listener) throws IOException {
+        while (true) {
+            switch (state) {
+                case HEADER:
+                    if (in.remaining() < 2) {
+                        return;
+                    }
+                    // FIN(1) RSV1-3(3) opcode(4)
+                    int b0 = in.get() & 0xFF;
+                    fin = (b0 & 0x80) != 0;
+                    rsv = (b0 >> 4) & 0x7;
+                    opCode = b0 & 0xF;
+                    // MASK(1) payload len(7)
+                    int b1 = in.get() & 0xFF;
+                    masked = (b1 & 0x80) != 0;
+                    int len = b1 & 0x7F;
+                    if (!masked) {
+                        // 客户端发送的帧必须带掩码
+                        throw new WsProtocolException("client frame is not masked");
+                    }
+                    if (len == 126) {
+                        extendedLengthBytes = 2;
+                        state = State.EXTENDED_LENGTH;
+                    } else if (len == 127) {
+                        extendedLengthBytes = 8;
+                        state = State.EXTENDED_LENGTH;
+                    } else {
+                        payloadLength = len;
+                        state = State.MASKING_KEY;
+                    }
+                    if (opCode >= 8 && (!fin || len > 125)) {
+                        // 控制帧不能分片，payload 不能超过 125
+                        throw new WsProtocolException("illegal control frame, opCode: " + opCode);
+                    }
+                    break;
+                case EXTENDED_LENGTH:
+                    if (in.remaining() < extendedLengthBytes) {
+                        return;
+                    }
+                    // convert to unsigned short / long
+                    payloadLength = extendedLengthBytes == 2 ? in.getShort() & 0xFFFF : in.getLong();
+                    if (payloadLength < 0 || payloadLength > maxFramePayloadLength) {
+                        throw new WsProtocolException(CloseStatus.MESSAGE_TOO_BIG,
+                                "frame payload too large: " + payloadLength);
+                    }
+                    state = State.MASKING_KEY;
+                    break;
+                case MASKING_KEY:
+                    if (masked) {
+                        if (in.remaining() < 4) {
+                            return;
+                        }
+                        int key = in.getInt();
+                        maskingKey = in.order() == ByteOrder.BIG_ENDIAN ? key : Integer.reverseBytes(key);
+                    }
+                    state = State.PAYLOAD;
+                    break;
+                case PAYLOAD:
+                    // 等待整个消息体到达，读缓冲区不够大时由调用方扩容
+                    if (in.remaining() < payloadLength) {
+                        return;
+                    }
+
+                    int start = in.position();
+                    int end = start + (int) payloadLength;
+                    if (isTextFrame()) {
+                        if (!Masking.unmaskUtf8(in, start, end, maskingKey, utf8Validator)
+                                || fin && !utf8Validator.isComplete()) {
+                            throw new WsProtocolException(CloseStatus.INVALID_PAYLOAD, "invalid UTF-8 text message");
+                        }
+                    } else if (masked) {
+                        Masking.mask(in, start, end, maskingKey);
+                    }
+                    ByteBuffer payload = in.duplicate().limit(end).position(start).slice();
+                    in.position(end);
+
+                    state = State.HEADER;
+                    listener.onFrame(fin, rsv, FrameType.parseFrame(opCode), payload);
+                    break;
+                default:
+                    throw new IllegalStateException("unknown state: " + state);
+            }
+        }
+    }
+
+    /**
+     * 当前帧是否属于需要校验 UTF-8 的文本消息，控制帧可以插在分片之间，不影响校验状态
+     */
+    private boolean isTextFrame() {
+        if (opCode >= 8) {
+            return false;
+        }
+        if (opCode == FrameType.TEXT.getOpCode()) {
+            validatingText = (rsv & PerMessageDeflate.RSV1) == 0;
+            utf8Validator.reset();
+        } else if (opCode != FrameType.CONTINUATION.getOpCode()) {
+            validatingText = false;
+        }
+        boolean text = validatingText;
+        if (fin) {
+            validatingText = false;
+        }
+        return text;
+    }
+
+}
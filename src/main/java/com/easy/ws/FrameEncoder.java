@@ -0,0 +1,113 @@
+package com.easy.ws;
+
+import java.nio.ByteBuffer;
+
+/**
+ * 服务端数据帧编码（服务端发送的帧不做掩码），客户端使用 {@link #encodeMasked(FrameType, ByteBuffer, int)}
+ * https://datatracker.ietf.org/doc/html/rfc6455#section-5.7
+ *
+ * @author Ray
+ * @date created in 2021/8/9 20:15
+ */
+public class FrameEncoder {
+
+    // FIN + opcode 1 字节，payload len 最多 1 + 8 字节
+    public static final int MAX_HEADER_LENGTH = 10;
+
+    private FrameEncoder() {
+    }
+
+    public static int headerLength(long length) {
+        if (length <= 125) {
+            return 2;
+        } else if (length <= 0xFFFF) {
+            return 4;
+        }
+        return 10;
+    }
+
+    public static void writeHeader(ByteBuffer dst, boolean fin, int rsv, FrameType frameType, long length) {
+        // 写入flag
+        int opCode = frameType.getOpCode();
+        // 0x80 => 1000 0000
+        // text frame type => 0000 0001
+        // 0x80 | text frame type  => 1000 0001
+        // (byte)(1000 0001) => -127
+        dst.put((byte) ((fin ? 0x80 : 0) | (rsv << 4) | opCode));
+
+        // write payload length
+        if (length <= 125) {
+            dst.put((byte) length);
+        } else if (length <= 0xFFFF) {
+            // data range 126 - 0xFFFF
+            dst.put((byte) 0x7E);
+            // write unsigned short
+            dst.putShort((short) length);
+        } else {
+            // data range > 0xFFFF
+            dst.put((byte) 0x7F);
+            // write unsigned long
+            dst.putLong(length);
+        }
+    }
+
+    /**
+     * 将整条消息（包括分片后的所有帧头）编码到一个只读的直接内存 buffer 中，可以被多个连接共享发送
+     */
+    public static ByteBuffer encode(FrameType frameType, ByteBuffer payload, int fragmentSize) {
+        return encode(frameType, 0, payload, fragmentSize);
+    }
+
+    /**
+     * rsv 只设置在第一帧，例如压缩消息的 RSV1
+     */
+    public static ByteBuffer encode(FrameType frameType, int rsv, ByteBuffer payload, int fragmentSize) {
+        return encode(frameType, rsv, payload, fragmentSize, true);
+    }
+
+    /**
+     * @param direct false 时编码到堆内存中，用于只发送一次的消息，避免每次都分配直接内存
+     */
+    static ByteBuffer encode(FrameType frameType, int rsv, ByteBuffer payload, int fragmentSize, boolean direct) {
+        int length = payload.remaining();
+        int frameSize = fragmentSize <= 0 || length <= fragmentSize ? length : fragmentSize;
+        int frames = frameSize == 0 ? 1 : (length + frameSize - 1) / frameSize;
+
+        int capacity = length + frames * headerLength(frameSize);
+        ByteBuffer frame = direct ? ByteBuffer.allocateDirect(capacity) : ByteBuffer.allocate(capacity);
+        ByteBuffer data = payload.duplicate();
+        for (int i = 0; i < frames; i++) {
+            int n = Math.min(frameSize, data.remaining());
+            boolean fin = i == frames - 1;
+            writeHeader(frame, fin, i == 0 ? rsv : 0, i == 0 ? frameType : FrameType.CONTINUATION, n);
+            int limit = data.limit();
+            data.limit(data.position() + n);
+            frame.put(data);
+            data.limit(limit);
+        }
+
+        frame.flip();
+        return frame.asReadOnlyBuffer();
+    }
+
+    /**
+     * 客户端编码：帧头设置 MASK 位，拷贝消息体后原地加上掩码，payload 本身不会被修改
+     *
+     * @param maskingKey 大端序的 4 字节 masking key，每帧应使用新的随机值
+     */
+    public static ByteBuffer encodeMasked(FrameType frameType, ByteBuffer payload, int maskingKey) {
+        int length = payload.remaining();
+        ByteBuffer frame = ByteBuffer.allocate(headerLength(length) + 4 + length);
+        writeHeader(frame, true, 0, frameType, length);
+        // MASK 位
+        frame.put(1, (byte) (frame.get(1) | 0x80));
+        frame.putInt(maskingKey);
+
+        int start = frame.position();
+        frame.put(payload.duplicate());
+        Masking.mask(frame, start, frame.position(), maskingKey);
+        frame.flip();
+        return frame;
+    }
+
+}
@@ -0,0 +1,26 @@
+package com.easy.ws;
+
+import java.io.IOException;
+
+/**
+ * ws 握手失败，status 为返回给客户端的 HTTP 状态码
+ *
+ * @author Ray
+ * @date created in 2021/8/11 20:30
+ */
+public class HandshakeException extends IOException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final int status;
+
+    public HandshakeException(int status, String message) {
+        super(message);
+        this.status = status;
+    }
+
+    public int getStatus() {
+        return this.status;
+    }
+
+}
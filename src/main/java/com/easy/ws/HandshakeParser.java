@@ -0,0 +1,231 @@
+package com.easy.ws;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+
+/**
+ * 非阻塞解析 ws 握手请求（HTTP Upgrade），请求头可以分多次到达。
+ * 直接在 ByteBuffer 上按字节扫描请求头，不使用正则，也不把整个请求转换成 String。
+ * https://datatracker.ietf.org/doc/html/rfc6455#section-4.2.1
+ *
+ * @author Ray
+ * @date created in 2021/8/11 20:40
+ */
+public class HandshakeParser {
+
+    private static final String GUID = "258EAFA5-E914-47DA-95CA-C5AB0DC85B11";
+    private static final byte[] GET = "GET ".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] UPGRADE = "upgrade".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] CONNECTION = "connection".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] SEC_WEBSOCKET_KEY = "sec-websocket-key".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] SEC_WEBSOCKET_VERSION = "sec-websocket-version".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] SEC_WEBSOCKET_EXTENSIONS =
+            "sec-websocket-extensions".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] WEBSOCKET = "websocket".getBytes(StandardCharsets.US_ASCII);
+
+    // 每个线程缓存一个 SHA-1 实例，避免每次握手都创建
+    private static final ThreadLocal<MessageDigest> SHA1 = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    });
+
+    // 下一次查找 \r\n\r\n 的起始位置，避免重复扫描已经到达的数据
+    private int scanFrom;
+    private boolean upgrade;
+    private boolean connectionUpgrade;
+    private String key;
+    private String version;
+    private String extensions;
+
+    /**
+     * 解析 buffer（读模式）中的请求头，请求头完整时返回 true，并将 position 移动到请求头之后；
+     * 不完整时返回 false，buffer 保持不变
+     *
+     * @throws HandshakeException 请求不是合法的 ws 握手请求
+     */
+    public boolean parse(ByteBuffer buffer) throws HandshakeException {
+        int start = buffer.position();
+        int limit = buffer.limit();
+        int end = -1;
+        for (int i = Math.max(start + scanFrom, start + 3); i < limit; i++) {
+            if (buffer.get(i) == '\n' && buffer.get(i - 1) == '\r'
+                    && buffer.get(i - 2) == '\n' && buffer.get(i - 3) == '\r') {
+                end = i + 1;
+                break;
+            }
+        }
+        if (end < 0) {
+            scanFrom = Math.max(0, limit - start - 3);
+            return false;
+        }
+
+        if (!startsWith(buffer, start, GET)) {
+            throw new HandshakeException(400, "not a GET request");
+        }
+
+        // 跳过请求行，逐行解析请求头
+        int lineStart = indexOf(buffer, start, end, (byte) '\n') + 1;
+        while (lineStart < end - 2) {
+            int lineEnd = indexOf(buffer, lineStart, end, (byte) '\n') - 1;
+            int colon = indexOf(buffer, lineStart, lineEnd, (byte) ':');
+            if (colon > lineStart) {
+                int valueStart = colon + 1;
+                int valueEnd = lineEnd;
+                while (valueStart < valueEnd && isWhitespace(buffer.get(valueStart))) {
+                    valueStart++;
+                }
+                while (valueEnd > valueStart && isWhitespace(buffer.get(valueEnd - 1))) {
+                    valueEnd--;
+                }
+                header(buffer, lineStart, colon, valueStart, valueEnd);
+            }
+            lineStart = lineEnd + 2;
+        }
+        buffer.position(end);
+
+        if (!upgrade || !connectionUpgrade) {
+            throw new HandshakeException(400, "not a websocket upgrade request");
+        }
+        if (key == null || key.isEmpty()) {
+            throw new HandshakeException(400, "missing Sec-WebSocket-Key");
+        }
+        if (!"13".equals(version)) {
+            throw new HandshakeException(426, "unsupported websocket version: " + version);
+        }
+        return true;
+    }
+
+    private void header(ByteBuffer buffer, int nameStart, int nameEnd, int valueStart, int valueEnd) {
+        if (equalsIgnoreCase(buffer, nameStart, nameEnd, UPGRADE)) {
+            upgrade = containsIgnoreCase(buffer, valueStart, valueEnd, WEBSOCKET);
+        } else if (equalsIgnoreCase(buffer, nameStart, nameEnd, CONNECTION)) {
+            connectionUpgrade = containsIgnoreCase(buffer, valueStart, valueEnd, UPGRADE);
+        } else if (equalsIgnoreCase(buffer, nameStart, nameEnd, SEC_WEBSOCKET_KEY)) {
+            key = ascii(buffer, valueStart, valueEnd);
+        } else if (equalsIgnoreCase(buffer, nameStart, nameEnd, SEC_WEBSOCKET_VERSION)) {
+            version = ascii(buffer, valueStart, valueEnd);
+        } else if (equalsIgnoreCase(buffer, nameStart, nameEnd, SEC_WEBSOCKET_EXTENSIONS)) {
+            // 可能出现多个 Sec-WebSocket-Extensions 请求头
+            String value = ascii(buffer, valueStart, valueEnd);
+            extensions = extensions == null ? value : extensions + ", " + value;
+        }
+    }
+
+    public String getKey() {
+        return this.key;
+    }
+
+    public String getExtensions() {
+        return this.extensions;
+    }
+
+    /**
+     * 101 响应
+     */
+    public String response() {
+        return response(null);
+    }
+
+    public String response(String extensionsResponse) {
+        // https://blog.51cto.com/shuxiayeshou/1762152
+        // https://blog.csdn.net/weixin_34080951/article/details/91915908
+        StringBuilder response = new StringBuilder(160)
+                .append("HTTP/1.1 101 Switching Protocols\r\nUpgrade: websocket\r\nConnection: Upgrade\r\n")
+                .append("Sec-WebSocket-Accept: ").append(getSecWebSocketAccept(key)).append("\r\n");
+        if (extensionsResponse != null) {
+            response.append("Sec-WebSocket-Extensions: ").append(extensionsResponse).append("\r\n");
+        }
+        return response.append("\r\n").toString();
+    }
+
+    /**
+     * 握手失败时的响应
+     */
+    public static String errorResponse(HandshakeException e) {
+        String status;
+        switch (e.getStatus()) {
+            case 426:
+                status = "426 Upgrade Required\r\nSec-WebSocket-Version: 13";
+                break;
+            case 431:
+                status = "431 Request Header Fields Too Large";
+                break;
+            default:
+                status = "400 Bad Request";
+        }
+        return "HTTP/1.1 " + status + "\r\nConnection: close\r\nContent-Length: 0\r\n\r\n";
+    }
+
+    // 服务端先获取 Sec-WebSocket-Key 请求头的值，之后在该值后加上 GUID
+    // 然后对该字符串进行 SHA1 加密，得到一个 byte 数组，最终将 byte 数组进行base64加密即可
+    public static String getSecWebSocketAccept(String key) {
+        MessageDigest md = SHA1.get();
+        md.reset();
+        md.update(key.getBytes(StandardCharsets.US_ASCII));
+        md.update(GUID.getBytes(StandardCharsets.US_ASCII));
+        byte[] shaHash = md.digest();
+        return Base64.getEncoder().encodeToString(shaHash);
+    }
+
+    private static boolean startsWith(ByteBuffer buffer, int start, byte[] prefix) {
+        if (buffer.limit() - start < prefix.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i++) {
+            if (buffer.get(start + i) != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int indexOf(ByteBuffer buffer, int from, int to, byte b) {
+        for (int i = from; i < to; i++) {
+            if (buffer.get(i) == b) {
+                return i;
+            }
+        }
+        return to;
+    }
+
+    // lower 为小写 ASCII，字母按位或 0x20 转为小写后比较
+    private static boolean equalsIgnoreCase(ByteBuffer buffer, int from, int to, byte[] lower) {
+        if (to - from != lower.length) {
+            return false;
+        }
+        for (int i = 0; i < lower.length; i++) {
+            if ((buffer.get(from + i) | 0x20) != lower[i] && buffer.get(from + i) != lower[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean containsIgnoreCase(ByteBuffer buffer, int from, int to, byte[] lower) {
+        for (int i = from; i <= to - lower.length; i++) {
+            if (equalsIgnoreCase(buffer, i, i + lower.length, lower)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isWhitespace(byte b) {
+        return b == ' ' || b == '\t';
+    }
+
+    private static String ascii(ByteBuffer buffer, int from, int to) {
+        byte[] bytes = new byte[to - from];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = buffer.get(from + i);
+        }
+        return new String(bytes, StandardCharsets.US_ASCII);
+    }
+
+}
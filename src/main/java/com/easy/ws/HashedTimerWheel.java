@@ -0,0 +1,129 @@
+package com.easy.ws;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 哈希时间轮，每个 WorkerThread 一个，只能在所属线程中使用。
+ * 添加、取消定时任务都是 O(1)；取消只做标记，轮到所在的格子时再移除。
+ *
+ * @author Ray
+ * @date created in 2021/8/15 16:20
+ */
+public class HashedTimerWheel {
+
+    private static final Logger logger = LoggerFactory.getLogger(HashedTimerWheel.class);
+
+    public static class Timeout {
+
+        private final Runnable task;
+        private long rounds;
+        private boolean cancelled;
+        private boolean expired;
+        private Timeout next;
+
+        private Timeout(Runnable task) {
+            this.task = task;
+        }
+
+        public void cancel() {
+            this.cancelled = true;
+        }
+
+        public boolean isCancelled() {
+            return this.cancelled;
+        }
+
+        public boolean isExpired() {
+            return this.expired;
+        }
+
+    }
+
+    private final long tickNanos;
+    private final Timeout[] buckets;
+    private final int mask;
+    private final long startNanos;
+    // 下一个要处理的 tick
+    private long tick;
+    private int size;
+
+    /**
+     * @param ticksPerWheel 格子数，向上取整为 2 的幂
+     */
+    public HashedTimerWheel(long tickNanos, int ticksPerWheel, long now) {
+        if (tickNanos <= 0 || ticksPerWheel <= 0) {
+            throw new IllegalArgumentException("tickNanos: " + tickNanos + ", ticksPerWheel: " + ticksPerWheel);
+        }
+        int n = Integer.highestOneBit(ticksPerWheel - 1 == 0 ? 1 : ticksPerWheel - 1) << 1;
+        this.tickNanos = tickNanos;
+        this.buckets = new Timeout[n];
+        this.mask = n - 1;
+        this.startNanos = now;
+    }
+
+    /**
+     * delayNanos 之后执行 task，精度为一个 tick
+     */
+    public Timeout schedule(Runnable task, long delayNanos, long now) {
+        Timeout timeout = new Timeout(task);
+        // 向上取整到 tick，至少在下一个 tick 执行
+        long deadlineTick = (now - startNanos + Math.max(delayNanos, 0) + tickNanos - 1) / tickNanos;
+        long targetTick = Math.max(deadlineTick, tick);
+        timeout.rounds = (targetTick - tick) / buckets.length;
+
+        int index = (int) (targetTick & mask);
+        timeout.next = buckets[index];
+        buckets[index] = timeout;
+        size++;
+        return timeout;
+    }
+
+    /**
+     * 执行所有到期的任务
+     */
+    public void expire(long now) {
+        long currentTick = (now - startNanos) / tickNanos;
+        while (tick <= currentTick) {
+            int index = (int) (tick++ & mask);
+            // 先摘下整个格子，任务中新添加的定时任务不会在本轮被处理
+            Timeout timeout = buckets[index];
+            buckets[index] = null;
+            while (timeout != null) {
+                Timeout next = timeout.next;
+                timeout.next = null;
+                if (timeout.cancelled) {
+                    size--;
+                } else if (timeout.rounds > 0) {
+                    timeout.rounds--;
+                    timeout.next = buckets[index];
+                    buckets[index] = timeout;
+                } else {
+                    size--;
+                    timeout.expired = true;
+                    try {
+                        timeout.task.run();
+                    } catch (RuntimeException e) {
+                        logger.error("run timer task failed", e);
+                    }
+                }
+                timeout = next;
+            }
+        }
+    }
+
+    /**
+     * 距离下一个 tick 的纳秒数，没有定时任务时返回 -1
+     */
+    public long nanosUntilNextTick(long now) {
+        if (size == 0) {
+            return -1;
+        }
+        return Math.max(0, startNanos + tick * tickNanos - now);
+    }
+
+    public int size() {
+        return this.size;
+    }
+
+}
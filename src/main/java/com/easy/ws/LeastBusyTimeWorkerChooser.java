@@ -0,0 +1,28 @@
+package com.easy.ws;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 选择最近一段时间处理事件耗时最少的 WorkerThread，连接数相同但负载不同时更均衡
+ *
+ * @author Ray
+ * @date created in 2021/8/10 20:30
+ */
+public class LeastBusyTimeWorkerChooser implements WorkerChooser {
+
+    private final AtomicInteger offset = new AtomicInteger();
+
+    @Override
+    public WorkerThread choose(WorkerThread[] workers) {
+        int start = Math.floorMod(offset.getAndIncrement(), workers.length);
+        WorkerThread chosen = workers[start];
+        for (int i = 1; i < workers.length; i++) {
+            WorkerThread workerThread = workers[(start + i) % workers.length];
+            if (workerThread.getRecentBusyNanos() < chosen.getRecentBusyNanos()) {
+                chosen = workerThread;
+            }
+        }
+        return chosen;
+    }
+
+}
@@ -0,0 +1,29 @@
+package com.easy.ws;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 选择当前连接数最少的 WorkerThread，适合长连接、连接频繁断开重连的场景
+ *
+ * @author Ray
+ * @date created in 2021/8/10 20:20
+ */
+public class LeastConnectionsWorkerChooser implements WorkerChooser {
+
+    // 每次从不同的位置开始比较，连接数相同时不会总是选中第一个
+    private final AtomicInteger offset = new AtomicInteger();
+
+    @Override
+    public WorkerThread choose(WorkerThread[] workers) {
+        int start = Math.floorMod(offset.getAndIncrement(), workers.length);
+        WorkerThread chosen = workers[start];
+        for (int i = 1; i < workers.length; i++) {
+            WorkerThread workerThread = workers[(start + i) % workers.length];
+            if (workerThread.getCurrentWsNum() < chosen.getCurrentWsNum()) {
+                chosen = workerThread;
+            }
+        }
+        return chosen;
+    }
+
+}
@@ -0,0 +1,70 @@
+package com.easy.ws;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * 数据帧掩码：payload[i] ^ key[i & 0x3]，掩码和去掉掩码是同一个操作。
+ * 每次处理 8 个字节（4 字节的 key 重复两次组成 long），剩余不足 8 个字节时逐字节处理。
+ * 堆内存和直接内存都原地修改
+ * https://datatracker.ietf.org/doc/html/rfc6455#section-5.3
+ *
+ * @author Ray
+ * @date created in 2021/8/20 20:15
+ */
+public final class Masking {
+
+    private Masking() {
+    }
+
+    /**
+     * @param key 大端序的 4 字节 masking key，即帧中 key 的第一个字节为最高位
+     */
+    public static void mask(ByteBuffer buffer, int start, int end, int key) {
+        // getLong / putLong 按 buffer 的字节序读写，long 掩码需要使用相同的字节序
+        int orderedKey = buffer.order() == ByteOrder.BIG_ENDIAN ? key : Integer.reverseBytes(key);
+        long longKey = (orderedKey & 0xFFFFFFFFL) << 32 | (orderedKey & 0xFFFFFFFFL);
+
+        int i = start;
+        // 从 start 开始每 8 个字节一组，8 是 4 的倍数，每组的掩码相同
+        for (int limit = end - 7; i < limit; i += 8) {
+            buffer.putLong(i, buffer.getLong(i) ^ longKey);
+        }
+        for (; i < end; i++) {
+            buffer.put(i, (byte) (buffer.get(i) ^ (key >>> ((3 - ((i - start) & 0x3)) << 3))));
+        }
+    }
+
+    /**
+     * 去掉掩码的同时校验 UTF-8，文本帧只需要遍历一次。
+     * 每组 8 个字节去掉掩码后如果处于字符边界并且都是 ASCII，跳过逐字节校验
+     *
+     * @return 是否仍然是合法的 UTF-8，字符可以跨越分片，消息结束时还需要检查 {@link Utf8Validator#isComplete()}
+     */
+    public static boolean unmaskUtf8(ByteBuffer buffer, int start, int end, int key, Utf8Validator validator) {
+        int orderedKey = buffer.order() == ByteOrder.BIG_ENDIAN ? key : Integer.reverseBytes(key);
+        long longKey = (orderedKey & 0xFFFFFFFFL) << 32 | (orderedKey & 0xFFFFFFFFL);
+
+        int i = start;
+        for (int limit = end - 7; i < limit; i += 8) {
+            long value = buffer.getLong(i) ^ longKey;
+            buffer.putLong(i, value);
+            if ((value & 0x8080808080808080L) != 0 || !validator.isComplete()) {
+                for (int j = i; j < i + 8; j++) {
+                    validator.update(buffer.get(j));
+                }
+            }
+        }
+        for (; i < end; i++) {
+            byte b = (byte) (buffer.get(i) ^ (key >>> ((3 - ((i - start) & 0x3)) << 3)));
+            buffer.put(i, b);
+            validator.update(b);
+        }
+        return validator.isValid();
+    }
+
+    public static int key(byte[] key) {
+        return (key[0] & 0xFF) << 24 | (key[1] & 0xFF) << 16 | (key[2] & 0xFF) << 8 | (key[3] & 0xFF);
+    }
+
+}
@@ -0,0 +1,19 @@
+package com.easy.ws;
+
+import java.util.List;
+
+/**
+ * 定时导出统计，例如写日志或者上报监控系统，通过 {@link WsConfig#setMetricsExporter(MetricsExporter)} 设置
+ *
+ * @author Ray
+ * @date created in 2021/8/18 21:30
+ */
+public interface MetricsExporter {
+
+    /**
+     * @param server  所有 WorkerThread 的汇总
+     * @param workers 每个 WorkerThread 的统计，顺序与 WorkerThread 一致
+     */
+    void export(MetricsSnapshot server, List<MetricsSnapshot> workers);
+
+}
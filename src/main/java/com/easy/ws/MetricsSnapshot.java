@@ -0,0 +1,159 @@
+package com.easy.ws;
+
+import java.util.List;
+
+/**
+ * 某一时刻的统计，WorkerThread 或整个 WsServer 的汇总
+ *
+ * @author Ray
+ * @date created in 2021/8/18 21:10
+ */
+public class MetricsSnapshot {
+
+    static final MetricsSnapshot EMPTY = new MetricsSnapshot(0, 0, 0, 0, 0,
+            new long[FrameType.values().length], new long[FrameType.values().length], 0,
+            new long[CloseReason.values().length], 0, 0, 0, LatencyHistogram.Snapshot.EMPTY,
+            LatencyHistogram.Snapshot.EMPTY);
+
+    private final int connections;
+    private final long messagesIn;
+    private final long messagesOut;
+    private final long bytesIn;
+    private final long bytesOut;
+    private final long[] framesIn;
+    private final long[] framesOut;
+    private final long handshakes;
+    private final long[] closes;
+    private final long pendingWriteBytes;
+    private final long inFlightMessages;
+    private final int unwritableConnections;
+    private final LatencyHistogram.Snapshot handshakeLatency;
+    private final LatencyHistogram.Snapshot messageLatency;
+
+    MetricsSnapshot(int connections, long messagesIn, long messagesOut, long bytesIn, long bytesOut,
+                    long[] framesIn, long[] framesOut, long handshakes, long[] closes, long pendingWriteBytes,
+                    long inFlightMessages, int unwritableConnections, LatencyHistogram.Snapshot handshakeLatency,
+                    LatencyHistogram.Snapshot messageLatency) {
+        this.connections = connections;
+        this.messagesIn = messagesIn;
+        this.messagesOut = messagesOut;
+        this.bytesIn = bytesIn;
+        this.bytesOut = bytesOut;
+        this.framesIn = framesIn;
+        this.framesOut = framesOut;
+        this.handshakes = handshakes;
+        this.closes = closes;
+        this.pendingWriteBytes = pendingWriteBytes;
+        this.inFlightMessages = inFlightMessages;
+        this.unwritableConnections = unwritableConnections;
+        this.handshakeLatency = handshakeLatency;
+        this.messageLatency = messageLatency;
+    }
+
+    /**
+     * 汇总多个 WorkerThread 的统计
+     */
+    public static MetricsSnapshot merge(List<MetricsSnapshot> snapshots) {
+        MetricsSnapshot result = EMPTY;
+        for (MetricsSnapshot snapshot : snapshots) {
+            result = result.merge(snapshot);
+        }
+        return result;
+    }
+
+    public MetricsSnapshot merge(MetricsSnapshot other) {
+        return new MetricsSnapshot(connections + other.connections, messagesIn + other.messagesIn,
+                messagesOut + other.messagesOut, bytesIn + other.bytesIn, bytesOut + other.bytesOut,
+                add(framesIn, other.framesIn), add(framesOut, other.framesOut), handshakes + other.handshakes,
+                add(closes, other.closes), pendingWriteBytes + other.pendingWriteBytes,
+                inFlightMessages + other.inFlightMessages, unwritableConnections + other.unwritableConnections,
+                handshakeLatency.merge(other.handshakeLatency), messageLatency.merge(other.messageLatency));
+    }
+
+    private static long[] add(long[] a, long[] b) {
+        long[] sum = new long[a.length];
+        for (int i = 0; i < a.length; i++) {
+            sum[i] = a[i] + b[i];
+        }
+        return sum;
+    }
+
+    public int getConnections() {
+        return this.connections;
+    }
+
+    public long getMessagesIn() {
+        return this.messagesIn;
+    }
+
+    public long getMessagesOut() {
+        return this.messagesOut;
+    }
+
+    public long getBytesIn() {
+        return this.bytesIn;
+    }
+
+    public long getBytesOut() {
+        return this.bytesOut;
+    }
+
+    public long getFramesIn(FrameType frameType) {
+        return this.framesIn[frameType.ordinal()];
+    }
+
+    public long getFramesOut(FrameType frameType) {
+        return this.framesOut[frameType.ordinal()];
+    }
+
+    public long getHandshakes() {
+        return this.handshakes;
+    }
+
+    public long getCloses(CloseReason reason) {
+        return this.closes[reason.ordinal()];
+    }
+
+    public long getPendingWriteBytes() {
+        return this.pendingWriteBytes;
+    }
+
+    public long getInFlightMessages() {
+        return this.inFlightMessages;
+    }
+
+    public int getUnwritableConnections() {
+        return this.unwritableConnections;
+    }
+
+    /**
+     * 握手耗时（纳秒）
+     */
+    public LatencyHistogram.Snapshot getHandshakeLatency() {
+        return this.handshakeLatency;
+    }
+
+    /**
+     * onMessage 耗时（纳秒）
+     */
+    public LatencyHistogram.Snapshot getMessageLatency() {
+        return this.messageLatency;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder closeReasons = new StringBuilder();
+        for (CloseReason reason : CloseReason.values()) {
+            if (closes[reason.ordinal()] > 0) {
+                closeReasons.append(closeReasons.length() == 0 ? "" : ", ")
+                        .append(reason).append('=').append(closes[reason.ordinal()]);
+            }
+        }
+        return "connections=" + connections + ", messagesIn=" + messagesIn + ", messagesOut=" + messagesOut
+                + ", bytesIn=" + bytesIn + ", bytesOut=" + bytesOut + ", handshakes=" + handshakes
+                + ", pendingWriteBytes=" + pendingWriteBytes + ", inFlightMessages=" + inFlightMessages
+                + ", unwritableConnections=" + unwritableConnections + ", closes={" + closeReasons + "}"
+                + ", handshakeLatency={" + handshakeLatency + "}, messageLatency={" + messageLatency + "}";
+    }
+
+}
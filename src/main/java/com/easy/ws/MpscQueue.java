@@ -0,0 +1,67 @@
+package com.easy.ws;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 无锁的多生产者单消费者队列，其它线程提交任务给 WorkerThread 时使用。
+ * 生产者只对 tail 做一次原子交换，消费者只访问 head，不需要 CAS 重试
+ *
+ * @author Ray
+ * @date created in 2021/8/16 21:05
+ */
+final class MpscQueue<E> {
+
+    private static final class Node<E> {
+
+        private E value;
+        private volatile Node<E> next;
+
+        private Node(E value) {
+            this.value = value;
+        }
+
+    }
+
+    // 生产者竞争的尾节点
+    private final AtomicReference<Node<E>> tail;
+    // 只由消费者访问，指向已经消费过的哨兵节点
+    private Node<E> head;
+
+    MpscQueue() {
+        Node<E> stub = new Node<>(null);
+        this.head = stub;
+        this.tail = new AtomicReference<>(stub);
+    }
+
+    /**
+     * 任意线程调用
+     */
+    void offer(E e) {
+        Node<E> node = new Node<>(e);
+        Node<E> prev = tail.getAndSet(node);
+        // 交换之后到链接之前，消费者暂时看不到该节点，链接完成后即可见
+        prev.next = node;
+    }
+
+    /**
+     * 只能由消费者线程调用，队列为空时返回 null
+     */
+    E poll() {
+        Node<E> next = head.next;
+        if (next == null) {
+            return null;
+        }
+        E value = next.value;
+        next.value = null;
+        head = next;
+        return value;
+    }
+
+    /**
+     * 只能由消费者线程调用
+     */
+    boolean isEmpty() {
+        return head.next == null;
+    }
+
+}
@@ -0,0 +1,110 @@
+package com.easy.ws;
+
+import java.io.IOException;
+import java.nio.channels.SelectableChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * 基于 JDK Selector 的事件循环（水平触发），{@link NioTransport} 使用。
+ * 使用 select(Consumer) 直接回调就绪的 key，不使用 selectedKeys 集合，也不创建迭代器
+ *
+ * @author Ray
+ * @date created in 2021/8/22 15:25
+ */
+public class NioEventLoop implements WsEventLoop {
+
+    private final Selector selector;
+    // 本次 poll 的回调，select 时复用同一个 Consumer，事件循环不产生垃圾
+    private Handler handler;
+    private final Consumer<SelectionKey> keyHandler = this::processKey;
+
+    public NioEventLoop(Selector selector) {
+        this.selector = selector;
+    }
+
+    @Override
+    public Registration register(SelectableChannel channel, int interestOps, Object attachment) throws IOException {
+        NioRegistration registration = new NioRegistration(attachment);
+        registration.selectionKey = channel.register(this.selector, interestOps, registration);
+        return registration;
+    }
+
+    @Override
+    public int pollNow(Handler handler) throws IOException {
+        this.handler = handler;
+        return this.selector.selectNow(this.keyHandler);
+    }
+
+    @Override
+    public int poll(Handler handler, long timeoutMillis) throws IOException {
+        this.handler = handler;
+        return this.selector.select(this.keyHandler, timeoutMillis);
+    }
+
+    private void processKey(SelectionKey selectionKey) {
+        if (selectionKey.isValid()) {
+            this.handler.onReady((Registration) selectionKey.attachment(), selectionKey.readyOps());
+        }
+    }
+
+    @Override
+    public void wakeup() {
+        this.selector.wakeup();
+    }
+
+    @Override
+    public List<Registration> registrations() {
+        List<Registration> registrations = new ArrayList<>();
+        for (SelectionKey selectionKey : this.selector.keys()) {
+            if (selectionKey.isValid()) {
+                registrations.add((Registration) selectionKey.attachment());
+            }
+        }
+        return registrations;
+    }
+
+    public Selector getSelector() {
+        return this.selector;
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.selector.close();
+    }
+
+    private static final class NioRegistration implements Registration {
+
+        private final Object attachment;
+        private SelectionKey selectionKey;
+
+        NioRegistration(Object attachment) {
+            this.attachment = attachment;
+        }
+
+        @Override
+        public Object attachment() {
+            return this.attachment;
+        }
+
+        @Override
+        public int interestOps() {
+            return this.selectionKey.interestOps();
+        }
+
+        @Override
+        public void interestOps(int ops) {
+            this.selectionKey.interestOps(ops);
+        }
+
+        @Override
+        public boolean isValid() {
+            return this.selectionKey.isValid();
+        }
+
+    }
+
+}
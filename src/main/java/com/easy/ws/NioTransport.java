@@ -0,0 +1,59 @@
+package com.easy.ws;
+
+import java.io.IOException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.spi.SelectorProvider;
+
+/**
+ * 基于 JDK SelectorProvider 的传输层，所有平台都可用。
+ * 默认使用平台的 SelectorProvider（Linux 上为 epoll，macOS 上为 kqueue），也可以指定其它实现
+ *
+ * @author Ray
+ * @date created in 2021/8/22 15:20
+ */
+public class NioTransport implements WsTransport {
+
+    public static final String NAME = "nio";
+
+    private final String name;
+    private final SelectorProvider provider;
+
+    public NioTransport() {
+        this(NAME, SelectorProvider.provider());
+    }
+
+    public NioTransport(String name, SelectorProvider provider) {
+        this.name = name;
+        this.provider = provider;
+    }
+
+    @Override
+    public String getName() {
+        return this.name;
+    }
+
+    @Override
+    public boolean isAvailable() {
+        return true;
+    }
+
+    @Override
+    public WsEventLoop openEventLoop() throws IOException {
+        return new NioEventLoop(this.provider.openSelector());
+    }
+
+    @Override
+    public ServerSocketChannel openServerSocketChannel() throws IOException {
+        return this.provider.openServerSocketChannel();
+    }
+
+    public SelectorProvider getProvider() {
+        return this.provider;
+    }
+
+    @Override
+    public String toString() {
+        return this.name + "(" + this.provider.getClass().getSimpleName() + ")";
+    }
+
+}
@@ -0,0 +1,67 @@
+package com.easy.ws;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * 发送队列中的一个帧：帧头和消息体分开存放，flush 时一起 gathering write
+ *
+ * @author Ray
+ * @date created in 2021/8/7 16:10
+ */
+class OutboundFrame {
+
+    // 帧头由 ByteBufferAllocator 分配，发送完成后归还；已经编码好的帧没有单独的帧头
+    final ByteBuffer header;
+    final ByteBuffer payload;
+    // 消息体引用的 WsPayload，发送完成后释放
+    final WsPayload source;
+    // 消息的最后一帧发送完成后完成，为 null 表示调用方不关心
+    final CompletableFuture<Void> promise;
+    // 帧的总长度，用于判断是否已经开始发送
+    private final long length;
+
+    /**
+     * 已经编码好的完整帧，例如广播时多个连接共享的帧
+     */
+    OutboundFrame(ByteBuffer encoded) {
+        this(null, encoded, null, null);
+    }
+
+    OutboundFrame(ByteBuffer header, ByteBuffer payload, WsPayload source) {
+        this(header, payload, source, null);
+    }
+
+    OutboundFrame(ByteBuffer header, ByteBuffer payload, WsPayload source, CompletableFuture<Void> promise) {
+        this.header = header;
+        this.payload = payload;
+        this.source = source;
+        this.promise = promise;
+        this.length = remaining();
+    }
+
+    long remaining() {
+        return (header == null ? 0 : header.remaining()) + payload.remaining();
+    }
+
+    /**
+     * 已经发送了一部分，之后的帧不能插入到它前面
+     */
+    boolean isStarted() {
+        return remaining() < length;
+    }
+
+    boolean isDone() {
+        return (header == null || !header.hasRemaining()) && !payload.hasRemaining();
+    }
+
+    void release(ByteBufferAllocator allocator) {
+        if (header != null) {
+            allocator.release(header);
+        }
+        if (source != null) {
+            source.release();
+        }
+    }
+
+}
@@ -0,0 +1,289 @@
+package com.easy.ws;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * 单个连接协商成功的 permessage-deflate 扩展，连接内复用同一个 Deflater / Inflater。
+ * 只能在连接所属的 WorkerThread 中使用。
+ * https://datatracker.ietf.org/doc/html/rfc7692
+ *
+ * @author Ray
+ * @date created in 2021/8/12 20:30
+ */
+public class PerMessageDeflate {
+
+    public static final String EXTENSION_NAME = "permessage-deflate";
+    // 压缩消息第一帧设置 RSV1
+    public static final int RSV1 = 0x4;
+    // 每条压缩消息末尾去掉、解压时补回的 4 个字节
+    private static final byte[] TAIL = {0, 0, (byte) 0xFF, (byte) 0xFF};
+
+    private final Deflater deflater;
+    private final Inflater inflater = new Inflater(true);
+    private final boolean serverNoContextTakeover;
+    private final boolean clientNoContextTakeover;
+    private final int minSize;
+    private final String response;
+    private final ByteBuffer tail = ByteBuffer.wrap(TAIL);
+    // 输出达到上限后检查是否还有数据没有解压出来
+    private final ByteBuffer overflow = ByteBuffer.allocate(1);
+
+    private PerMessageDeflate(PerMessageDeflateConfig config, boolean serverNoContextTakeover,
+                              boolean clientNoContextTakeover, String response) {
+        this.deflater = new Deflater(config.getCompressionLevel(), true);
+        this.serverNoContextTakeover = serverNoContextTakeover;
+        this.clientNoContextTakeover = clientNoContextTakeover;
+        this.minSize = config.getMinSize();
+        this.response = response;
+    }
+
+    /**
+     * 根据客户端的 Sec-WebSocket-Extensions 协商，选择第一个可以接受的 permessage-deflate 参数，
+     * 都不能接受时返回 null
+     */
+    public static PerMessageDeflate negotiate(String extensions, PerMessageDeflateConfig config) {
+        if (extensions == null || config == null) {
+            return null;
+        }
+
+        for (String offer : extensions.split(",")) {
+            String[] params = offer.split(";");
+            if (!EXTENSION_NAME.equalsIgnoreCase(params[0].trim())) {
+                continue;
+            }
+
+            boolean serverNoContextTakeover = config.isServerNoContextTakeover();
+            boolean clientNoContextTakeover = config.isClientNoContextTakeover();
+            boolean serverMaxWindowBits = false;
+            boolean clientMaxWindowBits = false;
+            int clientWindowBits = config.getClientMaxWindowBits();
+            boolean accepted = true;
+            for (int i = 1; i < params.length && accepted; i++) {
+                String param = params[i].trim();
+                String value = null;
+                int eq = param.indexOf('=');
+                if (eq > 0) {
+                    value = param.substring(eq + 1).trim().replace("\"", "");
+                    param = param.substring(0, eq).trim();
+                }
+
+                switch (param.toLowerCase()) {
+                    case "server_no_context_takeover":
+                        serverNoContextTakeover = true;
+                        break;
+                    case "client_no_context_takeover":
+                        clientNoContextTakeover = true;
+                        break;
+                    case "server_max_window_bits":
+                        // java.util.zip.Deflater 只支持 15 位窗口
+                        serverMaxWindowBits = true;
+                        accepted = "15".equals(value);
+                        break;
+                    case "client_max_window_bits":
+                        clientMaxWindowBits = true;
+                        if (value != null) {
+                            int bits = parseWindowBits(value);
+                            accepted = bits > 0;
+                            clientWindowBits = Math.min(clientWindowBits, bits);
+                        }
+                        break;
+                    default:
+                        accepted = false;
+                }
+            }
+            if (!accepted) {
+                continue;
+            }
+
+            StringBuilder response = new StringBuilder(EXTENSION_NAME);
+            if (serverNoContextTakeover) {
+                response.append("; server_no_context_takeover");
+            }
+            if (clientNoContextTakeover) {
+                response.append("; client_no_context_takeover");
+            }
+            // 接受了客户端的 server_max_window_bits 时响应中必须带上（RFC 7692 7.1.2.1）
+            if (serverMaxWindowBits) {
+                response.append("; server_max_window_bits=15");
+            }
+            // 客户端声明支持时才能限制客户端的窗口大小，Inflater 可以解压任意窗口大小的数据
+            if (clientMaxWindowBits && clientWindowBits < 15) {
+                response.append("; client_max_window_bits=").append(clientWindowBits);
+            }
+            return new PerMessageDeflate(config, serverNoContextTakeover, clientNoContextTakeover,
+                    response.toString());
+        }
+        return null;
+    }
+
+    private static int parseWindowBits(String value) {
+        try {
+            int bits = Integer.parseInt(value);
+            return bits >= 8 && bits <= 15 ? bits : -1;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * 握手响应中 Sec-WebSocket-Extensions 的值
+     */
+    public String getResponse() {
+        return this.response;
+    }
+
+    public boolean isServerNoContextTakeover() {
+        return this.serverNoContextTakeover;
+    }
+
+    public boolean shouldCompress(FrameType frameType, int length) {
+        return (frameType == FrameType.TEXT || frameType == FrameType.BINARY) && length >= minSize;
+    }
+
+    /**
+     * 解压一条消息的一部分（分片），last 表示消息的最后一部分，解压后的长度超过 maxSize 时抛出异常
+     */
+    RefCountedBuffer inflate(ByteBuffer input, boolean last, int maxSize, ByteBufferAllocator allocator)
+            throws IOException {
+        RefCountedBuffer output = new RefCountedBuffer(allocator,
+                (int) Math.min(Math.max(input.remaining() * 4L, 256), maxSize));
+        boolean tailFed = false;
+        inflater.setInput(input);
+        try {
+            while (true) {
+                if (!output.buffer.hasRemaining()) {
+                    if (output.buffer.capacity() < maxSize) {
+                        output = expand(output, maxSize, allocator);
+                    } else {
+                        // 正好解压出 maxSize 个字节是允许的，还有更多数据时才超出限制
+                        overflow.clear();
+                        if (inflater.inflate(overflow) > 0) {
+                            throw new WsProtocolException(CloseStatus.MESSAGE_TOO_BIG,
+                                    "message too large, max message size: " + maxSize);
+                        }
+                    }
+                }
+                if (output.buffer.hasRemaining()) {
+                    inflater.inflate(output.buffer);
+                    if (!output.buffer.hasRemaining()) {
+                        continue;
+                    }
+                }
+
+                if (inflater.finished()) {
+                    // 客户端发送了最后一个 deflate block，之后的消息使用新的上下文
+                    inflater.reset();
+                    break;
+                }
+                if (inflater.needsDictionary()) {
+                    throw new WsProtocolException("inflate failed: dictionary required");
+                }
+                if (inflater.needsInput()) {
+                    if (last && !tailFed) {
+                        tailFed = true;
+                        tail.clear();
+                        inflater.setInput(tail);
+                        continue;
+                    }
+                    break;
+                }
+            }
+        } catch (DataFormatException e) {
+            output.release();
+            throw new WsProtocolException("inflate failed: " + e.getMessage());
+        } catch (IOException e) {
+            output.release();
+            throw e;
+        }
+
+        if (last && clientNoContextTakeover) {
+            inflater.reset();
+        }
+        output.buffer.flip();
+        return output;
+    }
+
+    /**
+     * 压缩一条完整的消息，返回的 buffer 已去掉末尾的 0x00 0x00 0xFF 0xFF
+     */
+    RefCountedBuffer deflate(ByteBuffer input, ByteBufferAllocator allocator) throws IOException {
+        RefCountedBuffer output = new RefCountedBuffer(allocator, Math.max(64, input.remaining() + 64));
+        deflater.setInput(input);
+        while (true) {
+            deflater.deflate(output.buffer, Deflater.SYNC_FLUSH);
+            // 输出空间没有用完说明已经全部压缩并 flush
+            if (output.buffer.hasRemaining() && deflater.needsInput()) {
+                break;
+            }
+            output = expand(output, Integer.MAX_VALUE - 8, allocator);
+        }
+
+        ByteBuffer buffer = output.buffer;
+        buffer.flip();
+        int limit = buffer.limit();
+        if (limit >= 4 && buffer.get(limit - 4) == 0 && buffer.get(limit - 3) == 0
+                && buffer.get(limit - 2) == (byte) 0xFF && buffer.get(limit - 1) == (byte) 0xFF) {
+            buffer.limit(limit - 4);
+        }
+
+        if (serverNoContextTakeover) {
+            deflater.reset();
+        }
+        return output;
+    }
+
+    /**
+     * 使用新的压缩上下文压缩一条消息，不依赖之前发送过的消息，
+     * 只能发送给协商了 server_no_context_takeover 的连接。返回的 buffer 已去掉末尾的 4 个字节
+     */
+    static ByteBuffer deflateWithoutContext(ByteBuffer input, int compressionLevel) {
+        Deflater deflater = new Deflater(compressionLevel, true);
+        try {
+            ByteBuffer output = ByteBuffer.allocate(Math.max(64, input.remaining() + 64));
+            deflater.setInput(input.duplicate());
+            while (true) {
+                deflater.deflate(output, Deflater.SYNC_FLUSH);
+                if (output.hasRemaining() && deflater.needsInput()) {
+                    break;
+                }
+                output.flip();
+                output = ByteBuffer.allocate(output.capacity() << 1).put(output);
+            }
+
+            output.flip();
+            int limit = output.limit();
+            if (limit >= 4 && output.get(limit - 4) == 0 && output.get(limit - 3) == 0
+                    && output.get(limit - 2) == (byte) 0xFF && output.get(limit - 1) == (byte) 0xFF) {
+                output.limit(limit - 4);
+            }
+            return output;
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static RefCountedBuffer expand(RefCountedBuffer buffer, int maxSize, ByteBufferAllocator allocator)
+            throws IOException {
+        int capacity = buffer.buffer.capacity();
+        if (capacity >= maxSize) {
+            throw new WsProtocolException(CloseStatus.MESSAGE_TOO_BIG,
+                    "message too large, max message size: " + maxSize);
+        }
+
+        RefCountedBuffer expanded = new RefCountedBuffer(allocator, (int) Math.min((long) capacity << 1, maxSize));
+        buffer.buffer.flip();
+        expanded.buffer.put(buffer.buffer);
+        buffer.release();
+        return expanded;
+    }
+
+    public void close() {
+        deflater.end();
+        inflater.end();
+    }
+
+}
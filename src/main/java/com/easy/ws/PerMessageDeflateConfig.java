@@ -0,0 +1,73 @@
+package com.easy.ws;
+
+import java.util.zip.Deflater;
+
+/**
+ * permessage-deflate 压缩扩展配置
+ * https://datatracker.ietf.org/doc/html/rfc7692
+ *
+ * @author Ray
+ * @date created in 2021/8/12 20:10
+ */
+public class PerMessageDeflateConfig {
+
+    private int compressionLevel = Deflater.DEFAULT_COMPRESSION;
+    // 服务端每条消息压缩后重置压缩上下文，省内存但压缩率更低
+    private boolean serverNoContextTakeover;
+    // 要求客户端每条消息压缩后重置压缩上下文
+    private boolean clientNoContextTakeover;
+    // 要求客户端使用的 LZ77 窗口大小（8 ~ 15），只有客户端声明支持 client_max_window_bits 时才生效
+    private int clientMaxWindowBits = 15;
+    // 小于该长度的消息不压缩
+    private int minSize = 256;
+
+    public int getCompressionLevel() {
+        return this.compressionLevel;
+    }
+
+    public void setCompressionLevel(int compressionLevel) {
+        if (compressionLevel != Deflater.DEFAULT_COMPRESSION && (compressionLevel < 0 || compressionLevel > 9)) {
+            throw new IllegalArgumentException("compressionLevel: " + compressionLevel);
+        }
+        this.compressionLevel = compressionLevel;
+    }
+
+    public boolean isServerNoContextTakeover() {
+        return this.serverNoContextTakeover;
+    }
+
+    public void setServerNoContextTakeover(boolean serverNoContextTakeover) {
+        this.serverNoContextTakeover = serverNoContextTakeover;
+    }
+
+    public boolean isClientNoContextTakeover() {
+        return this.clientNoContextTakeover;
+    }
+
+    public void setClientNoContextTakeover(boolean clientNoContextTakeover) {
+        this.clientNoContextTakeover = clientNoContextTakeover;
+    }
+
+    public int getClientMaxWindowBits() {
+        return this.clientMaxWindowBits;
+    }
+
+    public void setClientMaxWindowBits(int clientMaxWindowBits) {
+        if (clientMaxWindowBits < 8 || clientMaxWindowBits > 15) {
+            throw new IllegalArgumentException("clientMaxWindowBits: " + clientMaxWindowBits);
+        }
+        this.clientMaxWindowBits = clientMaxWindowBits;
+    }
+
+    public int getMinSize() {
+        return this.minSize;
+    }
+
+    public void setMinSize(int minSize) {
+        if (minSize < 0) {
+            throw new IllegalArgumentException("minSize: " + minSize);
+        }
+        this.minSize = minSize;
+    }
+
+}
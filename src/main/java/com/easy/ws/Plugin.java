@@ -10,6 +10,10 @@ public interface Plugin {
 
     WsPayload interceptRequest(WsPayload wsPayload);
 
+    /**
+     * 可以返回 {@link PreparedWsPayload}，发送时直接使用编码好的帧。
+     * 收到 PreparedWsPayload 时如果需要修改内容，应返回新的 WsPayload
+     */
     WsPayload interceptResponse(WsPayload wsPayload);
 
 }
@@ -0,0 +1,115 @@
+package com.easy.ws;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 按线程缓存的直接内存 buffer 池。
+ * buffer 按 2 的幂划分规格（16B ~ 64KB），每个线程每种规格最多缓存 maxCachedPerClass 个，
+ * 超过最大规格的申请直接分配堆内存，不进入池中。
+ * 只有申请过 buffer 的线程（WorkerThread）才会缓存归还的 buffer，其它线程归还的 buffer 直接丢弃，交给 GC 回收，
+ * 回调线程池、业务线程不会再从池中申请，缓存在这些线程中的 buffer 无法复用。
+ *
+ * @author Ray
+ * @date created in 2021/8/7 15:35
+ */
+public class PooledByteBufferAllocator implements ByteBufferAllocator {
+
+    public static final PooledByteBufferAllocator DEFAULT = new PooledByteBufferAllocator();
+
+    private static final int MIN_SHIFT = 4;
+    private static final int MAX_SHIFT = 16;
+    private static final int MIN_CLASS_SIZE = 1 << MIN_SHIFT;
+    private static final int MAX_CLASS_SIZE = 1 << MAX_SHIFT;
+
+    private final int maxCachedPerClass;
+    // 第一次申请时创建，只归还 buffer 的线程没有池
+    private final ThreadLocal<ArrayDeque<ByteBuffer>[]> pools = new ThreadLocal<>();
+    private final LongAdder usedBytes = new LongAdder();
+    private final LongAdder pooledBytes = new LongAdder();
+
+    public PooledByteBufferAllocator() {
+        this(256);
+    }
+
+    public PooledByteBufferAllocator(int maxCachedPerClass) {
+        if (maxCachedPerClass < 0) {
+            throw new IllegalArgumentException("maxCachedPerClass: " + maxCachedPerClass);
+        }
+        this.maxCachedPerClass = maxCachedPerClass;
+    }
+
+    @Override
+    public ByteBuffer allocate(int capacity) {
+        if (capacity > MAX_CLASS_SIZE) {
+            return ByteBuffer.allocate(capacity);
+        }
+
+        int sizeClass = sizeClass(capacity);
+        ArrayDeque<ByteBuffer>[] classes = pools.get();
+        if (classes == null) {
+            classes = newPool();
+            pools.set(classes);
+        }
+        ByteBuffer buffer = classes[sizeClass].poll();
+        int size = MIN_CLASS_SIZE << sizeClass;
+        if (buffer == null) {
+            buffer = ByteBuffer.allocateDirect(size);
+        } else {
+            pooledBytes.add(-size);
+            buffer.clear();
+        }
+        usedBytes.add(size);
+        return buffer;
+    }
+
+    @Override
+    public void release(ByteBuffer buffer) {
+        int size = buffer.capacity();
+        // 不是池中规格的 buffer 不回收
+        if (!buffer.isDirect() || size > MAX_CLASS_SIZE || size < MIN_CLASS_SIZE || Integer.bitCount(size) != 1) {
+            return;
+        }
+
+        usedBytes.add(-size);
+        ArrayDeque<ByteBuffer>[] classes = pools.get();
+        if (classes == null) {
+            // 当前线程不从池中申请 buffer，缓存下来也不会被复用
+            return;
+        }
+        ArrayDeque<ByteBuffer> pool = classes[sizeClass(size)];
+        if (pool.size() < maxCachedPerClass) {
+            pool.push(buffer);
+            pooledBytes.add(size);
+        }
+    }
+
+    @Override
+    public long getUsedBytes() {
+        return this.usedBytes.sum();
+    }
+
+    @Override
+    public long getPooledBytes() {
+        return this.pooledBytes.sum();
+    }
+
+    private static ArrayDeque<ByteBuffer>[] newPool() {
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        ArrayDeque<ByteBuffer>[] classes = new ArrayDeque[MAX_SHIFT - MIN_SHIFT + 1];
+        for (int i = 0; i < classes.length; i++) {
+            classes[i] = new ArrayDeque<>();
+        }
+        return classes;
+    }
+
+    private static int sizeClass(int capacity) {
+        if (capacity <= MIN_CLASS_SIZE) {
+            return 0;
+        }
+        // 向上取整到 2 的幂
+        return 32 - Integer.numberOfLeadingZeros(capacity - 1) - MIN_SHIFT;
+    }
+
+}
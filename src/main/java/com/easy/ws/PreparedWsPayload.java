@@ -0,0 +1,108 @@
+package com.easy.ws;
+
+import java.nio.ByteBuffer;
+import java.util.Objects;
+
+/**
+ * 预先编码好的消息，适合心跳、ack、缓存的快照等反复发送的相同消息。
+ * 创建时编码出完整的帧（帧头 + 消息体，按 fragmentSize 分片）存放在只读的直接内存中，
+ * write、广播时所有连接共享同一个 buffer，只做 duplicate，不再重新编码和压缩。
+ * 创建之后不可修改，可以在任意线程中使用；不需要 retain / release。
+ *
+ * @author Ray
+ * @date created in 2021/8/18 20:10
+ */
+public final class PreparedWsPayload implements WsPayload {
+
+    private final FrameType frameType;
+    // 消息体的只读视图
+    private final ByteBuffer data;
+    private final ByteBuffer frame;
+    // 使用独立压缩上下文压缩后的帧，只发送给协商了 server_no_context_takeover 的连接，没有压缩时为 null
+    private final ByteBuffer compressedFrame;
+
+    public PreparedWsPayload(WsPayload wsPayload) {
+        this(wsPayload, 0, null);
+    }
+
+    /**
+     * @param fragmentSize  大于 0 时按该大小分片，控制帧不分片
+     * @param deflateConfig 不为 null 时额外编码一份压缩后的帧
+     */
+    public PreparedWsPayload(WsPayload wsPayload, int fragmentSize, PerMessageDeflateConfig deflateConfig) {
+        this(wsPayload, fragmentSize, deflateConfig, true);
+    }
+
+    /**
+     * @param direct false 时帧存放在堆内存中，例如只发送一次的广播消息
+     */
+    PreparedWsPayload(WsPayload wsPayload, int fragmentSize, PerMessageDeflateConfig deflateConfig, boolean direct) {
+        Objects.requireNonNull(wsPayload, "wsPayload is empty");
+
+        this.frameType = wsPayload.getFrameType();
+        boolean dataFrame = frameType == FrameType.TEXT || frameType == FrameType.BINARY;
+        ByteBuffer payload = wsPayload.getBuffer();
+        int length = payload.remaining();
+        this.frame = FrameEncoder.encode(frameType, 0, payload, dataFrame ? fragmentSize : 0, direct);
+
+        if (this.frame.remaining() == FrameEncoder.headerLength(length) + length) {
+            // 只有一帧时消息体直接引用帧中的数据，不再拷贝一份
+            ByteBuffer view = this.frame.duplicate();
+            view.position(FrameEncoder.headerLength(length));
+            this.data = view.slice();
+        } else {
+            this.data = ByteBuffer.allocate(length).put(payload.duplicate()).flip().asReadOnlyBuffer();
+        }
+
+        ByteBuffer compressed = null;
+        if (deflateConfig != null && dataFrame && length >= deflateConfig.getMinSize()) {
+            ByteBuffer deflated = PerMessageDeflate.deflateWithoutContext(payload,
+                    deflateConfig.getCompressionLevel());
+            // 压缩后没有变小时不使用
+            if (deflated.remaining() < length) {
+                compressed = FrameEncoder.encode(frameType, PerMessageDeflate.RSV1, deflated, fragmentSize, direct);
+            }
+        }
+        this.compressedFrame = compressed;
+    }
+
+    @Override
+    public FrameType getFrameType() {
+        return this.frameType;
+    }
+
+    /**
+     * 每次调用都拷贝一份，修改返回的数组不会影响已经编码好的帧
+     */
+    @Override
+    public byte[] getData() {
+        byte[] bytes = new byte[this.data.remaining()];
+        this.data.duplicate().get(bytes);
+        return bytes;
+    }
+
+    @Override
+    public ByteBuffer getBuffer() {
+        return this.data.duplicate();
+    }
+
+    @Override
+    public long getDataLength() {
+        return this.data.remaining();
+    }
+
+    public boolean isCompressed() {
+        return this.compressedFrame != null;
+    }
+
+    /**
+     * 发送给某个连接的帧：连接的压缩上下文不能被打断，只有协商了 server_no_context_takeover 时才发送压缩后的帧
+     */
+    ByteBuffer frame(PerMessageDeflate deflate) {
+        if (this.compressedFrame != null && deflate != null && deflate.isServerNoContextTakeover()) {
+            return this.compressedFrame.duplicate();
+        }
+        return this.frame.duplicate();
+    }
+
+}
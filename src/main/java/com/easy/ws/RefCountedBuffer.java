@@ -0,0 +1,57 @@
+package com.easy.ws;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 带引用计数的 buffer，引用计数归零时归还给 allocator。
+ * 读缓冲区中切出的 BufferWsPayload 会持有它的引用，保证消息被释放之前 buffer 不会被复用。
+ * 在 WorkerThread 中申请的 buffer 在其它线程（回调线程池、业务线程）中释放时，交还给该 WorkerThread 归还，
+ * 回到它的池中，下次读取时可以复用。
+ *
+ * @author Ray
+ * @date created in 2021/8/8 10:20
+ */
+class RefCountedBuffer {
+
+    final ByteBuffer buffer;
+    private final ByteBufferAllocator allocator;
+    private final AtomicInteger refCnt = new AtomicInteger(1);
+    // 申请 buffer 的 WorkerThread，不是在 WorkerThread 中申请时为 null
+    private final WorkerThread owner;
+
+    RefCountedBuffer(ByteBufferAllocator allocator, int capacity) {
+        this.allocator = allocator;
+        this.buffer = allocator.allocate(capacity);
+        Thread current = Thread.currentThread();
+        this.owner = current instanceof WorkerThread ? (WorkerThread) current : null;
+    }
+
+    int refCnt() {
+        return this.refCnt.get();
+    }
+
+    void retain() {
+        if (this.refCnt.getAndIncrement() <= 0) {
+            throw new IllegalStateException("buffer already released");
+        }
+    }
+
+    void release() {
+        int cnt = this.refCnt.decrementAndGet();
+        if (cnt == 0) {
+            if (this.owner != null && !this.owner.inWorkerThread()) {
+                this.owner.execute(this::deallocate);
+            } else {
+                deallocate();
+            }
+        } else if (cnt < 0) {
+            throw new IllegalStateException("buffer already released");
+        }
+    }
+
+    private void deallocate() {
+        this.allocator.release(this.buffer);
+    }
+
+}
@@ -0,0 +1,21 @@
+package com.easy.ws;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 轮询选择 WorkerThread
+ *
+ * @author Ray
+ * @date created in 2021/8/10 20:15
+ */
+public class RoundRobinWorkerChooser implements WorkerChooser {
+
+    private final AtomicInteger count = new AtomicInteger();
+
+    @Override
+    public WorkerThread choose(WorkerThread[] workers) {
+        // 计数器溢出变为负数后仍然得到合法的下标
+        return workers[Math.floorMod(count.getAndIncrement(), workers.length)];
+    }
+
+}
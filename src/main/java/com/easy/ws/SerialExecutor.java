@@ -0,0 +1,79 @@
+package com.easy.ws;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 在 delegate 上按提交顺序逐个执行任务，同一时刻最多只有一个任务在执行。
+ * 每个连接一个实例，保证同一个连接的回调按消息到达的顺序执行。
+ * delegate 拒绝执行时撤回本次提交的任务并抛出 RejectedExecutionException，之后提交的任务仍然可以重新调度。
+ *
+ * @author Ray
+ * @date created in 2021/8/14 15:10
+ */
+class SerialExecutor implements Executor {
+
+    private static final Logger logger = LoggerFactory.getLogger(SerialExecutor.class);
+
+    private final Executor delegate;
+    private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    SerialExecutor(Executor delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        tasks.offer(task);
+        try {
+            schedule();
+        } catch (RejectedExecutionException e) {
+            // 任务不会被执行，由调用方处理（例如释放消息、关闭连接）
+            tasks.remove(task);
+            throw e;
+        }
+    }
+
+    private void schedule() {
+        if (running.compareAndSet(false, true)) {
+            try {
+                delegate.execute(this::drain);
+            } catch (RejectedExecutionException e) {
+                running.set(false);
+                throw e;
+            }
+        }
+    }
+
+    private void drain() {
+        try {
+            Runnable task;
+            while ((task = tasks.poll()) != null) {
+                try {
+                    task.run();
+                } catch (RuntimeException e) {
+                    logger.error("run callback failed", e);
+                }
+            }
+        } finally {
+            running.set(false);
+            // 释放之后又有新任务提交
+            if (!tasks.isEmpty()) {
+                try {
+                    schedule();
+                } catch (RejectedExecutionException e) {
+                    // 剩余的任务留在队列中，下次提交时重新调度
+                    logger.warn("reschedule callbacks failed: {}", e.getMessage());
+                }
+            }
+        }
+    }
+
+}
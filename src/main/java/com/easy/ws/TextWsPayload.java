@@ -0,0 +1,164 @@
+package com.easy.ws;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 文本消息。
+ * 接收到的文本消息已经在解码时校验过 UTF-8，消息体直接引用读缓冲区，{@link #getText()} 第一次调用时才解码为 String 并缓存；
+ * 与 {@link BufferWsPayload} 一样只在回调期间有效，需要在回调之外使用时先调用 {@link #retain()}。
+ * 发送时使用 {@link #TextWsPayload(CharSequence)}，由 WorkerThread 直接编码到发送 buffer 中，不经过中间的 byte[]
+ *
+ * @author Ray
+ * @date created in 2021/8/21 16:30
+ */
+public class TextWsPayload implements WsPayload {
+
+    // 接收的消息不为 null；发送的消息在调用 getBuffer / getData 之前为 null
+    private ByteBuffer buffer;
+    private final RefCountedBuffer owner;
+    private final AtomicInteger refCnt = new AtomicInteger(1);
+    private CharSequence text;
+    private String string;
+    private byte[] data;
+
+    public TextWsPayload(CharSequence text) {
+        Objects.requireNonNull(text, "text is empty");
+        this.text = text;
+        this.owner = null;
+    }
+
+    /**
+     * @param buffer 已经校验过的 UTF-8 字节
+     */
+    TextWsPayload(ByteBuffer buffer, RefCountedBuffer owner) {
+        this.buffer = buffer.asReadOnlyBuffer();
+        this.owner = owner;
+        if (owner != null) {
+            owner.retain();
+        }
+    }
+
+    @Override
+    public FrameType getFrameType() {
+        return FrameType.TEXT;
+    }
+
+    /**
+     * 第一次调用时解码并缓存，纯 ASCII 的消息按 ISO-8859-1 直接拷贝
+     */
+    public String getText() {
+        if (this.string == null) {
+            if (this.text != null) {
+                this.string = this.text.toString();
+            } else if (isAscii(this.buffer)) {
+                byte[] bytes = new byte[this.buffer.remaining()];
+                this.buffer.duplicate().get(bytes);
+                this.string = new String(bytes, StandardCharsets.ISO_8859_1);
+            } else {
+                this.string = StandardCharsets.UTF_8.decode(this.buffer.duplicate()).toString();
+            }
+        }
+        return this.string;
+    }
+
+    /**
+     * 发送的消息返回原始的 CharSequence，接收的消息等同于 {@link #getText()}
+     */
+    public CharSequence getCharSequence() {
+        return this.text != null ? this.text : getText();
+    }
+
+    @Override
+    public byte[] getData() {
+        if (this.data == null) {
+            ByteBuffer encoded = getBuffer();
+            byte[] bytes = new byte[encoded.remaining()];
+            encoded.get(bytes);
+            this.data = bytes;
+        }
+        return this.data;
+    }
+
+    @Override
+    public ByteBuffer getBuffer() {
+        if (this.buffer == null) {
+            this.buffer = StandardCharsets.UTF_8.encode(CharBuffer.wrap(this.text)).asReadOnlyBuffer();
+        }
+        return this.buffer.duplicate();
+    }
+
+    @Override
+    public long getDataLength() {
+        return this.buffer != null ? this.buffer.remaining() : utf8Length(this.text);
+    }
+
+    /**
+     * 发送的消息是否还没有编码，WorkerThread 发送时直接编码到发送 buffer 中
+     */
+    boolean isEncoded() {
+        return this.buffer != null;
+    }
+
+    @Override
+    public WsPayload retain() {
+        if (this.refCnt.getAndIncrement() <= 0) {
+            throw new IllegalStateException("payload already released");
+        }
+        return this;
+    }
+
+    @Override
+    public boolean release() {
+        int cnt = this.refCnt.decrementAndGet();
+        if (cnt < 0) {
+            throw new IllegalStateException("payload already released");
+        }
+        if (cnt == 0 && this.owner != null) {
+            this.owner.release();
+            return true;
+        }
+        return cnt == 0;
+    }
+
+    /**
+     * 编码为 UTF-8 后的字节数，不成对的代理字符按 3 个字节计算，结果不小于实际编码后的长度
+     */
+    static int utf8Length(CharSequence text) {
+        int length = 0;
+        for (int i = 0, n = text.length(); i < n; i++) {
+            char c = text.charAt(i);
+            if (c < 0x80) {
+                length++;
+            } else if (c < 0x800) {
+                length += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < n && Character.isLowSurrogate(text.charAt(i + 1))) {
+                length += 4;
+                i++;
+            } else {
+                length += 3;
+            }
+        }
+        return length;
+    }
+
+    private static boolean isAscii(ByteBuffer buffer) {
+        int i = buffer.position();
+        int end = buffer.limit();
+        for (int limit = end - 7; i < limit; i += 8) {
+            if ((buffer.getLong(i) & 0x8080808080808080L) != 0) {
+                return false;
+            }
+        }
+        for (; i < end; i++) {
+            if (buffer.get(i) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+}
@@ -0,0 +1,49 @@
+package com.easy.ws;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 令牌桶限流，容量为一秒的令牌数。
+ * 只记录令牌全部补满的时间点（虚拟调度算法，与令牌桶等价），消费令牌只需要一次 CAS，可以在多个线程中共享。
+ * 令牌不足时仍然扣除（欠账），返回需要等待的时间，调用方暂停读取而不是丢弃已经读到的消息
+ *
+ * @author Ray
+ * @date created in 2021/8/19 20:40
+ */
+public class TokenBucket {
+
+    // 生成一个令牌需要的纳秒数
+    private final double nanosPerToken;
+    // 桶的容量对应的纳秒数
+    private final long burstNanos;
+    // 已消费的令牌全部补回来的时间，早于当前时间说明桶是满的
+    private final AtomicLong fullAt;
+
+    /**
+     * @param tokensPerSecond 每秒生成的令牌数，同时也是桶的容量
+     */
+    public TokenBucket(long tokensPerSecond, long now) {
+        if (tokensPerSecond <= 0) {
+            throw new IllegalArgumentException("tokensPerSecond: " + tokensPerSecond);
+        }
+        this.nanosPerToken = (double) TimeUnit.SECONDS.toNanos(1) / tokensPerSecond;
+        this.burstNanos = TimeUnit.SECONDS.toNanos(1);
+        this.fullAt = new AtomicLong(now);
+    }
+
+    /**
+     * 消费 tokens 个令牌，返回令牌恢复为非负需要等待的纳秒数，没有超出限制时返回 0
+     */
+    public long consume(long tokens, long now) {
+        long cost = (long) (tokens * nanosPerToken);
+        long prev;
+        long next;
+        do {
+            prev = fullAt.get();
+            next = (prev - now > 0 ? prev : now) + cost;
+        } while (!fullAt.compareAndSet(prev, next));
+        return Math.max(0, next - burstNanos - now);
+    }
+
+}
@@ -0,0 +1,24 @@
+package com.easy.ws;
+
+import java.nio.ByteBuffer;
+
+/**
+ * 不做缓存，每次申请新的堆内存 buffer，交给 GC 回收
+ *
+ * @author Ray
+ * @date created in 2021/8/7 15:28
+ */
+public class UnpooledByteBufferAllocator implements ByteBufferAllocator {
+
+    public static final UnpooledByteBufferAllocator INSTANCE = new UnpooledByteBufferAllocator();
+
+    @Override
+    public ByteBuffer allocate(int capacity) {
+        return ByteBuffer.allocate(capacity);
+    }
+
+    @Override
+    public void release(ByteBuffer buffer) {
+    }
+
+}
@@ -0,0 +1,89 @@
+package com.easy.ws;
+
+import java.nio.ByteBuffer;
+
+/**
+ * 增量校验 UTF-8，基于 Bjoern Hoehrmann 的 DFA：https://bjoern.hoehrmann.de/utf-8/decoder/dfa/
+ * 状态在多次调用之间保留，一个字符可以跨越多个分片。
+ * 处于字符边界时每次检查 8 个字节是否都是 ASCII，纯 ASCII 的文本不需要逐字节查表
+ *
+ * @author Ray
+ * @date created in 2021/8/21 15:10
+ */
+public final class Utf8Validator {
+
+    static final int ACCEPT = 0;
+    static final int REJECT = 12;
+    private static final long ASCII_MASK = 0x8080808080808080L;
+
+    private static final byte[] TYPES = {
+            0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0,
+            0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0,
+            0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0,
+            0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0,
+            1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 9, 9, 9, 9, 9, 9, 9, 9, 9, 9, 9, 9, 9, 9, 9, 9,
+            7, 7, 7, 7, 7, 7, 7, 7, 7, 7, 7, 7, 7, 7, 7, 7, 7, 7, 7, 7, 7, 7, 7, 7, 7, 7, 7, 7, 7, 7, 7, 7,
+            8, 8, 2, 2, 2, 2, 2, 2, 2, 2, 2, 2, 2, 2, 2, 2, 2, 2, 2, 2, 2, 2, 2, 2, 2, 2, 2, 2, 2, 2, 2, 2,
+            10, 3, 3, 3, 3, 3, 3, 3, 3, 3, 3, 3, 3, 4, 3, 3, 11, 6, 6, 6, 5, 8, 8, 8, 8, 8, 8, 8, 8, 8, 8, 8
+    };
+
+    // 状态（12 的倍数）+ 字节类型 => 下一个状态
+    private static final byte[] STATES = {
+            0, 12, 24, 36, 60, 96, 84, 12, 12, 12, 48, 72, 12, 12, 12, 12, 12, 12, 12, 12, 12, 12, 12, 12,
+            12, 0, 12, 12, 12, 12, 12, 0, 12, 0, 12, 12, 12, 24, 12, 12, 12, 12, 12, 24, 12, 24, 12, 12,
+            12, 12, 12, 12, 12, 12, 12, 24, 12, 12, 12, 12, 12, 24, 12, 12, 12, 12, 12, 12, 12, 24, 12, 12,
+            12, 12, 12, 12, 12, 12, 12, 36, 12, 36, 12, 12, 12, 36, 12, 12, 12, 12, 12, 36, 12, 36, 12, 12,
+            12, 36, 12, 12, 12, 12, 12, 12, 12, 12, 12, 12
+    };
+
+    private int state = ACCEPT;
+
+    /**
+     * 校验 buffer 中 [start, end) 的字节，不修改 position，出现非法字节后返回 false
+     */
+    public boolean update(ByteBuffer buffer, int start, int end) {
+        int i = start;
+        int s = state;
+        while (i < end && s != REJECT) {
+            // ASCII 快速路径，字节序不影响结果
+            if (s == ACCEPT && end - i >= 8 && (buffer.getLong(i) & ASCII_MASK) == 0) {
+                i += 8;
+                continue;
+            }
+            s = STATES[s + TYPES[buffer.get(i++) & 0xFF]];
+        }
+        state = s;
+        return s != REJECT;
+    }
+
+    /**
+     * 校验一个字节，出现非法字节后返回 false
+     */
+    boolean update(int b) {
+        if (state != REJECT) {
+            state = STATES[state + TYPES[b & 0xFF]];
+        }
+        return state != REJECT;
+    }
+
+    public boolean isValid() {
+        return state != REJECT;
+    }
+
+    /**
+     * 到目前为止的字节是合法的 UTF-8，并且停在字符边界上（消息结束时必须满足）
+     */
+    public boolean isComplete() {
+        return state == ACCEPT;
+    }
+
+    public void reset() {
+        state = ACCEPT;
+    }
+
+    public static boolean isValidUtf8(ByteBuffer buffer) {
+        Utf8Validator validator = new Utf8Validator();
+        return validator.update(buffer, buffer.position(), buffer.limit()) && validator.isComplete();
+    }
+
+}
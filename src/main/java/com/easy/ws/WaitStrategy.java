@@ -0,0 +1,18 @@
+package com.easy.ws;
+
+/**
+ * WorkerThread 没有事件时的等待方式
+ *
+ * @author Ray
+ * @date created in 2021/8/22 20:10
+ */
+public enum WaitStrategy {
+
+    // 直接阻塞在 select 上，不占用 CPU（默认）
+    BLOCK,
+    // 阻塞之前先用 selectNow 忙轮询，延迟最低，空闲时也占满一个 CPU 核
+    SPIN,
+    // 与 SPIN 相同，每次轮询之间调用 Thread.yield() 让出 CPU
+    YIELD
+
+}
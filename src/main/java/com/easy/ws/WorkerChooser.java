@@ -0,0 +1,13 @@
+package com.easy.ws;
+
+/**
+ * 为新连接选择 WorkerThread
+ *
+ * @author Ray
+ * @date created in 2021/8/10 20:10
+ */
+public interface WorkerChooser {
+
+    WorkerThread choose(WorkerThread[] workers);
+
+}
@@ -0,0 +1,105 @@
+package com.easy.ws;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * WorkerThread 的统计，主要在 WorkerThread 中记录；使用 LongAdder，回调线程池中记录时也不会产生竞争
+ *
+ * @author Ray
+ * @date created in 2021/8/18 20:50
+ */
+public class WorkerMetrics {
+
+    private static final FrameType[] FRAME_TYPES = FrameType.values();
+    private static final CloseReason[] CLOSE_REASONS = CloseReason.values();
+
+    private final WorkerThread workerThread;
+    private final LongAdder messagesIn = new LongAdder();
+    private final LongAdder messagesOut = new LongAdder();
+    private final LongAdder bytesIn = new LongAdder();
+    private final LongAdder bytesOut = new LongAdder();
+    private final LongAdder[] framesIn = newAdders(FRAME_TYPES.length);
+    private final LongAdder[] framesOut = newAdders(FRAME_TYPES.length);
+    private final LongAdder handshakes = new LongAdder();
+    private final LongAdder[] closes = newAdders(CLOSE_REASONS.length);
+    // 从接收连接到握手完成的耗时
+    private final LatencyHistogram handshakeLatency = new LatencyHistogram();
+    // WsCallback#onMessage（包括 Plugin）的耗时
+    private final LatencyHistogram messageLatency = new LatencyHistogram();
+
+    WorkerMetrics(WorkerThread workerThread) {
+        this.workerThread = workerThread;
+    }
+
+    private static LongAdder[] newAdders(int length) {
+        LongAdder[] adders = new LongAdder[length];
+        for (int i = 0; i < length; i++) {
+            adders[i] = new LongAdder();
+        }
+        return adders;
+    }
+
+    void recordMessageIn() {
+        messagesIn.increment();
+    }
+
+    void recordMessageOut() {
+        messagesOut.increment();
+    }
+
+    void recordBytesIn(long bytes) {
+        bytesIn.add(bytes);
+    }
+
+    void recordBytesOut(long bytes) {
+        bytesOut.add(bytes);
+    }
+
+    void recordFrameIn(FrameType frameType) {
+        framesIn[frameType.ordinal()].increment();
+    }
+
+    void recordFrameOut(FrameType frameType) {
+        framesOut[frameType.ordinal()].increment();
+    }
+
+    void recordHandshake(long latencyNanos) {
+        handshakes.increment();
+        handshakeLatency.record(latencyNanos);
+    }
+
+    void recordClose(CloseReason reason) {
+        closes[reason.ordinal()].increment();
+    }
+
+    void recordMessageLatency(long latencyNanos) {
+        messageLatency.record(latencyNanos);
+    }
+
+    public MetricsSnapshot snapshot() {
+        // 队列深度：遍历当前连接的待发送数据和正在回调中处理的消息
+        long pendingWriteBytes = 0;
+        long inFlightMessages = 0;
+        int unwritable = 0;
+        for (WsContextImpl context : workerThread.getContexts()) {
+            pendingWriteBytes += context.getPendingBytes();
+            inFlightMessages += context.getInFlightMessages();
+            if (!context.isWritable()) {
+                unwritable++;
+            }
+        }
+        return new MetricsSnapshot(workerThread.getCurrentWsNum(), messagesIn.sum(), messagesOut.sum(),
+                bytesIn.sum(), bytesOut.sum(), sums(framesIn), sums(framesOut), handshakes.sum(), sums(closes),
+                pendingWriteBytes, inFlightMessages, unwritable, handshakeLatency.snapshot(),
+                messageLatency.snapshot());
+    }
+
+    private static long[] sums(LongAdder[] adders) {
+        long[] sums = new long[adders.length];
+        for (int i = 0; i < adders.length; i++) {
+            sums[i] = adders[i].sum();
+        }
+        return sums;
+    }
+
+}
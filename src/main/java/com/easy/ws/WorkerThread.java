@@ -4,12 +4,16 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
-import java.nio.channels.ClosedChannelException;
-import java.nio.channels.SelectionKey;
-import java.nio.channels.Selector;
+import java.nio.ByteBuffer;
 import java.nio.channels.SocketChannel;
-import java.util.Iterator;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 
 /**
@@ -20,18 +24,59 @@ public class WorkerThread extends Thread {
 
     public final Logger logger = LoggerFactory.getLogger(WorkerThread.class);
     public static final AtomicInteger COUNTER = new AtomicInteger();
+    // 单次 gathering write 最多写出的 buffer 个数
+    public static final int MAX_GATHERING_BUFFERS = 64;
+    // 统计繁忙时间的窗口
+    private static final long BUSY_WINDOW_NANOS = 1_000_000_000L;
+    // 时间轮精度 100ms，一圈 512 格约 51 秒
+    private static final long TIMER_TICK_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+    private static final int TIMER_WHEEL_SIZE = 512;
 
     // 当前线程处理 SocketChannel 个数
     private final AtomicInteger wsCounter = new AtomicInteger();
-    private Selector selector;
-    private boolean running = true;
+    private WsEventLoop eventLoop;
+    private volatile boolean running = true;
     private WsCallback wsCallback;
     private List<Plugin> plugins;
+    private WsConfig config;
+    // 其它线程提交给当前线程执行的任务，例如注册连接、跨线程写数据和关闭连接
+    private final MpscQueue<Runnable> tasks = new MpscQueue<>();
+    // 是否已经唤醒过 poll，避免每个任务都调用一次 wakeup（系统调用）
+    private final AtomicBoolean wakenUp = new AtomicBoolean();
+    // flush 只在当前线程执行，所有连接复用同一个数组
+    private final ByteBuffer[] gatheringBuffers = new ByteBuffer[MAX_GATHERING_BUFFERS];
+    // 发送文本消息时使用，只在当前线程中使用
+    private CharsetEncoder utf8Encoder;
+    // 当前线程处理的连接，广播时在其它线程遍历
+    private final Set<WsContextImpl> contexts = ConcurrentHashMap.newKeySet();
+    private final WorkerMetrics metrics = new WorkerMetrics(this);
+    // 所有 WorkerThread 共享的限流，为 null 表示不限制
+    private TokenBucket globalMessageLimiter;
+    private TokenBucket globalByteLimiter;
+    private WsRegistry registry;
+    // 握手超时、心跳和空闲检测的定时任务
+    private final HashedTimerWheel timer;
+    // 本轮事件循环开始处理的时间，连接记录读写时间时使用，避免频繁调用 System.nanoTime()
+    private long nanoTime = System.nanoTime();
+    // 最近的繁忙时间（处理事件耗时），每个窗口结束时与上一个值取平均
+    private volatile long recentBusyNanos;
+    private long windowBusyNanos;
+    private long windowStart = System.nanoTime();
+    // poll 时处理就绪事件的回调，复用同一个实例，事件循环不产生垃圾
+    private final WsEventLoop.Handler readyHandler = this::processReady;
+    // 本轮是否已经处理过就绪事件，以及开始处理的时间
+    private boolean inBatch;
+    private long batchStart;
 
     public WorkerThread() {
+        this(new NioTransport());
+    }
+
+    public WorkerThread(WsTransport transport) {
+        this.timer = new HashedTimerWheel(TIMER_TICK_NANOS, TIMER_WHEEL_SIZE, nanoTime);
         try {
             super.setName("worker-thread-" + COUNTER.getAndIncrement());
-            this.selector = Selector.open();
+            this.eventLoop = transport.openEventLoop();
         } catch (IOException e) {
             e.printStackTrace();
         }
@@ -45,6 +90,26 @@ public class WorkerThread extends Thread {
         return this.wsCounter.get();
     }
 
+    /**
+     * 最近一秒左右处理事件的耗时（纳秒），用于选择负载最低的 WorkerThread
+     */
+    public long getRecentBusyNanos() {
+        return this.recentBusyNanos;
+    }
+
+    public WorkerMetrics getMetrics() {
+        return this.metrics;
+    }
+
+    private void recordBusyTime(long start, long end) {
+        windowBusyNanos += end - start;
+        if (end - windowStart >= BUSY_WINDOW_NANOS) {
+            recentBusyNanos = (recentBusyNanos + windowBusyNanos) >> 1;
+            windowBusyNanos = 0;
+            windowStart = end;
+        }
+    }
+
     public void setWsCallback(WsCallback wsCallback) {
         this.wsCallback = wsCallback;
     }
@@ -53,66 +118,254 @@ public class WorkerThread extends Thread {
         this.plugins = plugins;
     }
 
+    public void setConfig(WsConfig config) {
+        this.config = config;
+    }
+
+    public WsConfig getConfig() {
+        return this.config;
+    }
+
+    public void setRegistry(WsRegistry registry) {
+        this.registry = registry;
+    }
+
+    public WsRegistry getRegistry() {
+        return this.registry;
+    }
+
+    public void setGlobalRateLimiter(TokenBucket messageLimiter, TokenBucket byteLimiter) {
+        this.globalMessageLimiter = messageLimiter;
+        this.globalByteLimiter = byteLimiter;
+    }
+
+    protected TokenBucket getGlobalMessageLimiter() {
+        return this.globalMessageLimiter;
+    }
+
+    protected TokenBucket getGlobalByteLimiter() {
+        return this.globalByteLimiter;
+    }
+
+    protected Set<WsContextImpl> getContexts() {
+        return this.contexts;
+    }
+
+    protected ByteBuffer[] getGatheringBuffers() {
+        return this.gatheringBuffers;
+    }
+
+    /**
+     * 只能在当前线程中使用，不合法的代理字符替换为 '?'
+     */
+    protected CharsetEncoder getUtf8Encoder() {
+        if (this.utf8Encoder == null) {
+            this.utf8Encoder = StandardCharsets.UTF_8.newEncoder()
+                    .onMalformedInput(CodingErrorAction.REPLACE)
+                    .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        }
+        return this.utf8Encoder;
+    }
+
+    /**
+     * 只能在当前线程中使用
+     */
+    protected HashedTimerWheel getTimer() {
+        return this.timer;
+    }
+
+    /**
+     * 本轮事件循环的时间（纳秒）
+     */
+    protected long nanoTime() {
+        return this.nanoTime;
+    }
+
+    /**
+     * 当前线程是否为该 WorkerThread
+     */
+    public boolean inWorkerThread() {
+        return Thread.currentThread() == this;
+    }
+
+    /**
+     * 提交任务到当前 WorkerThread 执行，并唤醒阻塞在 poll 上的线程
+     */
+    public void execute(Runnable task) {
+        this.tasks.offer(task);
+        // 当前线程提交的任务在本轮事件循环结束前执行，不需要唤醒
+        if (!inWorkerThread() && this.wakenUp.compareAndSet(false, true)) {
+            this.eventLoop.wakeup();
+        }
+    }
+
+    private void runTasks() {
+        Runnable task;
+        while ((task = this.tasks.poll()) != null) {
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                logger.error("run task failed", e);
+            }
+        }
+    }
+
+    /**
+     * 将新连接交给当前线程，握手在当前线程中非阻塞地完成
+     */
     public void register(SocketChannel socketChannel) {
+        // 统计 socketChannel 个数，选择 WorkerThread 时立即生效
+        this.wsCounter.incrementAndGet();
+        long acceptNanos = System.nanoTime();
+        execute(() -> doRegister(socketChannel, acceptNanos));
+    }
+
+    private void doRegister(SocketChannel socketChannel, long acceptNanos) {
         try {
-            SelectionKey selectionKey = socketChannel.register(selector, SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+            // 只关注读事件，有数据待发送时才关注写事件
+            WsContextImpl wsContext = new WsContextImpl(this, socketChannel, wsCallback, plugins);
+            wsContext.setRegistration(eventLoop.register(socketChannel, WsEventLoop.OP_READ, wsContext));
+            // 握手超时检查
+            wsContext.startHandshake(acceptNanos);
 
             if (logger.isDebugEnabled()) {
-                try {
-                    logger.debug("register {} to {} thread", socketChannel.getRemoteAddress().toString(),
-                            this.getName());
-                } catch (IOException e) {
-                    e.printStackTrace();
-                }
+                logger.debug("register {} to {} thread", socketChannel.getRemoteAddress(), this.getName());
             }
+        } catch (IOException e) {
+            logger.error("register {} failed: {}", socketChannel, e.getMessage());
+            this.wsCounter.decrementAndGet();
+            try {
+                socketChannel.close();
+            } catch (IOException ioException) {
+                ioException.printStackTrace();
+            }
+        }
+    }
 
-            WsContextImpl wsContext = new WsContextImpl(this, socketChannel, wsCallback, plugins);
-            selectionKey.attach(wsContext);
-
-            // 回调
-            this.wsCallback.onOpen(wsContext);
-            // 统计 socketChannel 个数
-            this.wsCounter.incrementAndGet();
-        } catch (ClosedChannelException e) {
-            logger.error("ws server died");
-            e.printStackTrace();
+    protected void onHandshakeComplete(WsContextImpl wsContext) {
+        this.contexts.add(wsContext);
+        if (this.registry != null) {
+            this.registry.register(wsContext);
         }
+        // 回调
+        wsContext.fireOpen();
     }
 
-    public Selector getSelector() {
-        return this.selector;
+    /**
+     * 等待并处理 I/O 事件：有待执行的任务时不阻塞；有定时任务时最多等到下一个 tick，否则一直阻塞到被唤醒。
+     * 就绪的连接由事件循环直接回调，不创建集合和迭代器
+     */
+    private void select() throws IOException {
+        WaitStrategy waitStrategy = this.config.getWaitStrategy();
+        if (waitStrategy != WaitStrategy.BLOCK && spin(waitStrategy)) {
+            return;
+        }
+
+        // 先重置唤醒标记再检查队列，之后提交的任务一定会唤醒 poll
+        this.wakenUp.set(false);
+        if (!this.tasks.isEmpty()) {
+            this.eventLoop.pollNow(this.readyHandler);
+            return;
+        }
+
+        long nanos = this.timer.nanosUntilNextTick(System.nanoTime());
+        if (nanos < 0) {
+            this.eventLoop.poll(this.readyHandler, 0);
+        } else {
+            // poll(0) 表示一直阻塞，至少等待 1 毫秒
+            this.eventLoop.poll(this.readyHandler, TimeUnit.NANOSECONDS.toMillis(nanos) + 1);
+        }
+    }
+
+    /**
+     * 阻塞之前先用 pollNow 轮询若干次，有事件、任务或者到期的定时任务时返回 true
+     */
+    private boolean spin(WaitStrategy waitStrategy) throws IOException {
+        // 自旋期间由当前线程检查任务队列，其它线程提交任务时不需要调用 wakeup
+        this.wakenUp.set(true);
+        for (int i = this.config.getSpinIterations(); i > 0; i--) {
+            if (this.eventLoop.pollNow(this.readyHandler) > 0 || !this.tasks.isEmpty()
+                    || this.timer.nanosUntilNextTick(System.nanoTime()) == 0) {
+                return true;
+            }
+            if (waitStrategy == WaitStrategy.YIELD) {
+                Thread.yield();
+            } else {
+                Thread.onSpinWait();
+            }
+        }
+        return false;
+    }
+
+    private void processReady(WsEventLoop.Registration registration, int readyOps) {
+        if (!this.inBatch) {
+            // 本轮的第一个事件，记录时间供连接更新读写时间
+            this.inBatch = true;
+            this.batchStart = this.nanoTime = System.nanoTime();
+        }
+        if (!registration.isValid()) {
+            return;
+        }
+
+        WsContextImpl wsContext = (WsContextImpl) registration.attachment();
+        try {
+            if ((readyOps & WsEventLoop.OP_WRITE) != 0) {
+                // 发送缓冲区可写，继续发送队列中的数据
+                wsContext.flush();
+            }
+            if (registration.isValid() && (readyOps & WsEventLoop.OP_READ) != 0) {
+                // 处理 ws body
+                wsContext.handlerPayload();
+            }
+        } catch (WsProtocolException e) {
+            wsContext.failConnection(e);
+        } catch (IOException e) {
+            logger.warn("handler payload failed, close connection: {}", e.getMessage());
+            wsContext.closeChannel(CloseReason.IO_ERROR);
+        } catch (RuntimeException e) {
+            // 在当前线程中执行的回调抛出异常时只关闭这个连接
+            wsContext.failConnection(e);
+        }
+    }
+
+    public WsEventLoop getEventLoop() {
+        return this.eventLoop;
     }
 
     public void close() {
         this.running = false;
+        this.eventLoop.wakeup();
     }
 
     @Override
     public void run() {
         while (running) {
             try {
-                // 不加上 timout，channel 注册之后无法读取消息
-                this.selector.select(1000L);
-                Iterator<SelectionKey> iterator = this.selector.selectedKeys().iterator();
-                while (iterator.hasNext()) {
-                    SelectionKey selectionKey = iterator.next();
-                    iterator.remove();
-
-                    if (!selectionKey.isValid()) {
-                        continue;
-                    }
-
-                    if (selectionKey.isReadable()) {
-                        WsContext wsContext = (WsContext) selectionKey.attachment();
-                        // 处理 ws body
-                        wsContext.handlerPayload();
-                    }
-                }
+                this.inBatch = false;
+                // 就绪的事件在 poll 中逐个处理
+                select();
+                long start = this.inBatch ? this.batchStart : (this.nanoTime = System.nanoTime());
+
+                runTasks();
+                // 执行到期的定时任务
+                this.nanoTime = System.nanoTime();
+                this.timer.expire(this.nanoTime);
+                recordBusyTime(start, System.nanoTime());
 
             } catch (IOException e) {
                 e.printStackTrace();
             }
         }
+
+        // 停止后关闭所有连接（包括握手中的连接）
+        for (WsEventLoop.Registration registration : this.eventLoop.registrations()) {
+            ((WsContextImpl) registration.attachment()).shutdown();
+        }
+        try {
+            this.eventLoop.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
     }
 
 }
@@ -8,9 +8,35 @@ public interface WsCallback {
 
     void onOpen(WsContext context);
 
+    /**
+     * wsPayload 直接引用读缓冲区，只在回调期间有效；需要异步处理时先调用 {@link WsPayload#retain()}。
+     * 返回的消息作为响应发送，返回 null 表示不回复，可以之后通过 {@link WsContext#send(WsPayload)} 推送
+     */
     WsPayload onMessage(WsContext context, WsPayload wsPayload);
 
     void onClose(WsContext context);
 
+    /**
+     * 连接关闭，code 为 close 握手的状态码（{@link CloseStatus}）：客户端发起关闭时为客户端的状态码，
+     * 服务端发起时为服务端的状态码，没有完成 close 握手（例如直接断开 TCP 连接）时为 1006。
+     * 默认调用 {@link #onClose(WsContext)}
+     */
+    default void onClose(WsContext context, int code, String reason) {
+        onClose(context);
+    }
+
     default void onPing(WsContext context) { }
+
+    default void onPong(WsContext context) { }
+
+    /**
+     * 开启 {@link WsConfig#setFragmentStreaming(boolean)} 后，分片消息的每个分片到达时回调，不再合并后调用 onMessage。
+     * fragment 的类型为整条消息的类型（TEXT/BINARY），last 表示是否为最后一个分片
+     */
+    default void onFragment(WsContext context, WsPayload fragment, boolean last) { }
+
+    /**
+     * 连接可写状态发生变化，通过 {@link WsContext#isWritable()} 获取当前状态
+     */
+    default void onWritabilityChanged(WsContext context) { }
 }
@@ -0,0 +1,374 @@
+package com.easy.ws;
+
+import java.util.Objects;
+import java.util.concurrent.Executor;
+
+/**
+ * easy-ws 服务配置，由 WsServer 持有并共享给所有 WorkerThread
+ *
+ * @author Ray
+ * @date created in 2021/8/6 20:30
+ */
+public class WsConfig {
+
+    private int workerNum = Runtime.getRuntime().availableProcessors();
+    private WorkerChooser workerChooser = new RoundRobinWorkerChooser();
+    // 传输层名称，为 null 时选择可用的、优先级最高的实现
+    private String transport;
+    // WorkerThread 没有事件时的等待方式，SPIN / YIELD 在阻塞之前先轮询 spinIterations 次
+    private WaitStrategy waitStrategy = WaitStrategy.BLOCK;
+    private int spinIterations = 1000;
+    // 接收连接的线程数
+    private int acceptorNum = 1;
+    // 多个 AcceptorThread 时各自监听端口（SO_REUSEPORT），系统不支持时共享同一个 ServerSocketChannel
+    private boolean reusePort = true;
+    // 等待 accept 的连接队列长度
+    private int backlog = 1024;
+
+    // 待发送数据超过高水位后连接变为不可写，降到低水位以下后恢复可写
+    private int writeBufferHighWaterMark = 64 * 1024;
+    private int writeBufferLowWaterMark = 32 * 1024;
+    // 单次读取使用的 buffer 大小，连接空闲时会归还给 allocator
+    private int readBufferSize = 4096;
+    private ByteBufferAllocator allocator = PooledByteBufferAllocator.DEFAULT;
+    // 接收消息（分片合并后）的最大长度，超过后断开连接
+    private int maxMessageSize = 16 * 1024 * 1024;
+    // 发送消息超过该长度时自动分片，0 表示不分片
+    private int fragmentSize = 64 * 1024;
+    // 开启后分片消息通过 WsCallback#onFragment 逐个分片回调，不在内存中合并
+    private boolean fragmentStreaming;
+    // 握手超时时间，超时未完成握手的连接会被关闭
+    private long handshakeTimeoutMillis = 10_000;
+    // 握手请求头最大长度
+    private int maxHandshakeSize = 8 * 1024;
+    // 不为 null 时在握手中协商 permessage-deflate 压缩扩展
+    private PerMessageDeflateConfig perMessageDeflate;
+    // 不为 null 时 WsCallback 和 Plugin 在该线程池中执行，同一个连接的回调仍然按顺序执行
+    private Executor callbackExecutor;
+    // 每个连接正在回调中处理的最大消息数，超过后暂停读取该连接
+    private int maxInFlightMessages = 64;
+    // 每个连接每秒最多接收的消息数和字节数，超过后暂停读取直到令牌恢复，0 表示不限制
+    private long maxMessagesPerSecond;
+    private long maxBytesPerSecond;
+    // 整个服务每秒最多接收的消息数和字节数，所有连接共享，0 表示不限制
+    private long globalMaxMessagesPerSecond;
+    private long globalMaxBytesPerSecond;
+    // 连接在该时间内没有收到数据时发送 PING，0 表示不发送
+    private long pingIntervalMillis = 30_000;
+    // 发送 PING 之后在该时间内没有收到任何数据（包括 PONG）时关闭连接
+    private long pongTimeoutMillis = 10_000;
+    // 连接在该时间内没有读写数据时关闭连接，0 表示不限制
+    private long idleTimeoutMillis;
+    // 发送 close 帧后等待客户端回复的时间，超时后直接关闭连接
+    private long closeTimeoutMillis = 3_000;
+    // 不为 null 时每隔 metricsExportIntervalMillis 导出一次统计
+    private MetricsExporter metricsExporter;
+    private long metricsExportIntervalMillis = 60_000;
+
+    public int getWorkerNum() {
+        return this.workerNum;
+    }
+
+    public void setWorkerNum(int workerNum) {
+        if (workerNum <= 0) {
+            throw new IllegalArgumentException("workerNum: " + workerNum);
+        }
+        this.workerNum = workerNum;
+    }
+
+    public WorkerChooser getWorkerChooser() {
+        return this.workerChooser;
+    }
+
+    public void setWorkerChooser(WorkerChooser workerChooser) {
+        this.workerChooser = Objects.requireNonNull(workerChooser, "workerChooser is empty");
+    }
+
+    public String getTransport() {
+        return this.transport;
+    }
+
+    /**
+     * 指定传输层，例如 {@link NioTransport#NAME}，可用的实现见 {@link WsTransports#available()}
+     */
+    public void setTransport(String transport) {
+        this.transport = transport;
+    }
+
+    public WaitStrategy getWaitStrategy() {
+        return this.waitStrategy;
+    }
+
+    public void setWaitStrategy(WaitStrategy waitStrategy) {
+        if (waitStrategy == null) {
+            throw new IllegalArgumentException("waitStrategy is null");
+        }
+        this.waitStrategy = waitStrategy;
+    }
+
+    public int getSpinIterations() {
+        return this.spinIterations;
+    }
+
+    public void setSpinIterations(int spinIterations) {
+        if (spinIterations <= 0) {
+            throw new IllegalArgumentException("spinIterations: " + spinIterations);
+        }
+        this.spinIterations = spinIterations;
+    }
+
+    public int getAcceptorNum() {
+        return this.acceptorNum;
+    }
+
+    public void setAcceptorNum(int acceptorNum) {
+        if (acceptorNum <= 0) {
+            throw new IllegalArgumentException("acceptorNum: " + acceptorNum);
+        }
+        this.acceptorNum = acceptorNum;
+    }
+
+    public boolean isReusePort() {
+        return this.reusePort;
+    }
+
+    public void setReusePort(boolean reusePort) {
+        this.reusePort = reusePort;
+    }
+
+    public int getBacklog() {
+        return this.backlog;
+    }
+
+    public void setBacklog(int backlog) {
+        if (backlog <= 0) {
+            throw new IllegalArgumentException("backlog: " + backlog);
+        }
+        this.backlog = backlog;
+    }
+
+    public int getWriteBufferHighWaterMark() {
+        return this.writeBufferHighWaterMark;
+    }
+
+    public int getWriteBufferLowWaterMark() {
+        return this.writeBufferLowWaterMark;
+    }
+
+    public void setWriteBufferWaterMark(int low, int high) {
+        if (low < 0 || high < low) {
+            throw new IllegalArgumentException("illegal water mark, low: " + low + ", high: " + high);
+        }
+        this.writeBufferLowWaterMark = low;
+        this.writeBufferHighWaterMark = high;
+    }
+
+    public int getReadBufferSize() {
+        return this.readBufferSize;
+    }
+
+    public void setReadBufferSize(int readBufferSize) {
+        if (readBufferSize < 16) {
+            throw new IllegalArgumentException("readBufferSize: " + readBufferSize);
+        }
+        this.readBufferSize = readBufferSize;
+    }
+
+    public ByteBufferAllocator getAllocator() {
+        return this.allocator;
+    }
+
+    public void setAllocator(ByteBufferAllocator allocator) {
+        this.allocator = Objects.requireNonNull(allocator, "allocator is empty");
+    }
+
+    public int getMaxMessageSize() {
+        return this.maxMessageSize;
+    }
+
+    public void setMaxMessageSize(int maxMessageSize) {
+        if (maxMessageSize <= 0) {
+            throw new IllegalArgumentException("maxMessageSize: " + maxMessageSize);
+        }
+        this.maxMessageSize = maxMessageSize;
+    }
+
+    public int getFragmentSize() {
+        return this.fragmentSize;
+    }
+
+    public void setFragmentSize(int fragmentSize) {
+        if (fragmentSize < 0) {
+            throw new IllegalArgumentException("fragmentSize: " + fragmentSize);
+        }
+        this.fragmentSize = fragmentSize;
+    }
+
+    public boolean isFragmentStreaming() {
+        return this.fragmentStreaming;
+    }
+
+    public void setFragmentStreaming(boolean fragmentStreaming) {
+        this.fragmentStreaming = fragmentStreaming;
+    }
+
+    public long getHandshakeTimeoutMillis() {
+        return this.handshakeTimeoutMillis;
+    }
+
+    public void setHandshakeTimeoutMillis(long handshakeTimeoutMillis) {
+        if (handshakeTimeoutMillis <= 0) {
+            throw new IllegalArgumentException("handshakeTimeoutMillis: " + handshakeTimeoutMillis);
+        }
+        this.handshakeTimeoutMillis = handshakeTimeoutMillis;
+    }
+
+    public int getMaxHandshakeSize() {
+        return this.maxHandshakeSize;
+    }
+
+    public void setMaxHandshakeSize(int maxHandshakeSize) {
+        if (maxHandshakeSize < 256) {
+            throw new IllegalArgumentException("maxHandshakeSize: " + maxHandshakeSize);
+        }
+        this.maxHandshakeSize = maxHandshakeSize;
+    }
+
+    public PerMessageDeflateConfig getPerMessageDeflate() {
+        return this.perMessageDeflate;
+    }
+
+    public void setPerMessageDeflate(PerMessageDeflateConfig perMessageDeflate) {
+        this.perMessageDeflate = perMessageDeflate;
+    }
+
+    public Executor getCallbackExecutor() {
+        return this.callbackExecutor;
+    }
+
+    /**
+     * 设置回调线程池，可以使用 {@link CallbackExecutors#newVirtualThreadPerTaskExecutor()}
+     */
+    public void setCallbackExecutor(Executor callbackExecutor) {
+        this.callbackExecutor = callbackExecutor;
+    }
+
+    public int getMaxInFlightMessages() {
+        return this.maxInFlightMessages;
+    }
+
+    public void setMaxInFlightMessages(int maxInFlightMessages) {
+        if (maxInFlightMessages <= 0) {
+            throw new IllegalArgumentException("maxInFlightMessages: " + maxInFlightMessages);
+        }
+        this.maxInFlightMessages = maxInFlightMessages;
+    }
+
+    public long getMaxMessagesPerSecond() {
+        return this.maxMessagesPerSecond;
+    }
+
+    public void setMaxMessagesPerSecond(long maxMessagesPerSecond) {
+        if (maxMessagesPerSecond < 0) {
+            throw new IllegalArgumentException("maxMessagesPerSecond: " + maxMessagesPerSecond);
+        }
+        this.maxMessagesPerSecond = maxMessagesPerSecond;
+    }
+
+    public long getMaxBytesPerSecond() {
+        return this.maxBytesPerSecond;
+    }
+
+    public void setMaxBytesPerSecond(long maxBytesPerSecond) {
+        if (maxBytesPerSecond < 0) {
+            throw new IllegalArgumentException("maxBytesPerSecond: " + maxBytesPerSecond);
+        }
+        this.maxBytesPerSecond = maxBytesPerSecond;
+    }
+
+    public long getGlobalMaxMessagesPerSecond() {
+        return this.globalMaxMessagesPerSecond;
+    }
+
+    public void setGlobalMaxMessagesPerSecond(long globalMaxMessagesPerSecond) {
+        if (globalMaxMessagesPerSecond < 0) {
+            throw new IllegalArgumentException("globalMaxMessagesPerSecond: " + globalMaxMessagesPerSecond);
+        }
+        this.globalMaxMessagesPerSecond = globalMaxMessagesPerSecond;
+    }
+
+    public long getGlobalMaxBytesPerSecond() {
+        return this.globalMaxBytesPerSecond;
+    }
+
+    public void setGlobalMaxBytesPerSecond(long globalMaxBytesPerSecond) {
+        if (globalMaxBytesPerSecond < 0) {
+            throw new IllegalArgumentException("globalMaxBytesPerSecond: " + globalMaxBytesPerSecond);
+        }
+        this.globalMaxBytesPerSecond = globalMaxBytesPerSecond;
+    }
+
+    public long getPingIntervalMillis() {
+        return this.pingIntervalMillis;
+    }
+
+    public void setPingIntervalMillis(long pingIntervalMillis) {
+        if (pingIntervalMillis < 0) {
+            throw new IllegalArgumentException("pingIntervalMillis: " + pingIntervalMillis);
+        }
+        this.pingIntervalMillis = pingIntervalMillis;
+    }
+
+    public long getPongTimeoutMillis() {
+        return this.pongTimeoutMillis;
+    }
+
+    public void setPongTimeoutMillis(long pongTimeoutMillis) {
+        if (pongTimeoutMillis <= 0) {
+            throw new IllegalArgumentException("pongTimeoutMillis: " + pongTimeoutMillis);
+        }
+        this.pongTimeoutMillis = pongTimeoutMillis;
+    }
+
+    public long getIdleTimeoutMillis() {
+        return this.idleTimeoutMillis;
+    }
+
+    public void setIdleTimeoutMillis(long idleTimeoutMillis) {
+        if (idleTimeoutMillis < 0) {
+            throw new IllegalArgumentException("idleTimeoutMillis: " + idleTimeoutMillis);
+        }
+        this.idleTimeoutMillis = idleTimeoutMillis;
+    }
+
+    public long getCloseTimeoutMillis() {
+        return this.closeTimeoutMillis;
+    }
+
+    public void setCloseTimeoutMillis(long closeTimeoutMillis) {
+        if (closeTimeoutMillis <= 0) {
+            throw new IllegalArgumentException("closeTimeoutMillis: " + closeTimeoutMillis);
+        }
+        this.closeTimeoutMillis = closeTimeoutMillis;
+    }
+
+    public MetricsExporter getMetricsExporter() {
+        return this.metricsExporter;
+    }
+
+    public void setMetricsExporter(MetricsExporter metricsExporter) {
+        this.metricsExporter = metricsExporter;
+    }
+
+    public long getMetricsExportIntervalMillis() {
+        return this.metricsExportIntervalMillis;
+    }
+
+    public void setMetricsExportIntervalMillis(long metricsExportIntervalMillis) {
+        if (metricsExportIntervalMillis <= 0) {
+            throw new IllegalArgumentException("metricsExportIntervalMillis: " + metricsExportIntervalMillis);
+        }
+        this.metricsExportIntervalMillis = metricsExportIntervalMillis;
+    }
+
+}
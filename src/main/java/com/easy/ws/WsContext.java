@@ -3,6 +3,7 @@ package com.easy.ws;
 import java.io.IOException;
 import java.net.SocketAddress;
 import java.nio.channels.SocketChannel;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * @author Ray
@@ -10,16 +11,68 @@ import java.nio.channels.SocketChannel;
  */
 public interface WsContext {
 
+    /**
+     * 连接的唯一 id，可以通过 {@link WsRegistry#get(long)} 查找
+     */
+    long getId();
+
+    <T> T getAttribute(AttributeKey<T> key);
+
+    /**
+     * 设置属性并返回原来的值，value 为 null 时移除；建立了索引的属性同时更新 {@link WsRegistry} 的索引。
+     * 同一个属性不要在多个线程中同时修改
+     */
+    <T> T setAttribute(AttributeKey<T> key, T value);
+
     SocketChannel getSocketChannel();
 
+    /**
+     * 发送消息，{@link PreparedWsPayload} 直接发送编码好的帧，不再重新编码
+     */
     void write(WsPayload wsPayload) throws IOException;
 
+    /**
+     * 线程安全的异步发送，消息交给所属的 WorkerThread 发送，可以在任意线程中主动推送。
+     * 返回的 future 在消息写入 socket 后（在 WorkerThread 中）完成，连接关闭时以 ClosedChannelException 失败
+     */
+    CompletableFuture<Void> send(WsPayload wsPayload);
+
     void handlerPayload() throws IOException;
 
+    /**
+     * 发送队列中待发送的数据，发送缓冲区满时注册 OP_WRITE 等待下次发送
+     */
+    void flush() throws IOException;
+
+    /**
+     * 待发送数据超过高水位时返回 false，降到低水位以下后恢复为 true
+     */
+    boolean isWritable();
+
+    /**
+     * 发送 close 帧（1000），收到客户端回复的 close 帧或者超时后关闭连接
+     */
     void close();
 
+    /**
+     * 发送带状态码和原因的 close 帧，reason 编码后超过 123 字节时截断
+     */
+    void close(int code, String reason);
+
     WorkerThread getWorkerThread();
 
+    /**
+     * 连接关闭后在 WorkerThread 中回调
+     */
+    void addCloseListener(Runnable listener);
+
+    void removeCloseListener(Runnable listener);
+
+    /**
+     * 当前连接收发的消息数和字节数
+     */
+    ConnectionMetrics getMetrics();
+
     default SocketAddress getRemoteAddress() {
         try {
             return getSocketChannel().getRemoteAddress();
@@ -3,12 +3,27 @@ package com.easy.ws;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.ClosedChannelException;
 import java.nio.channels.SocketChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * https://datatracker.ietf.org/doc/html/rfc6455#section-5.2
@@ -20,10 +35,77 @@ import java.util.List;
 public class WsContextImpl implements WsContext {
 
     private final Logger logger = LoggerFactory.getLogger(WsContextImpl.class);
+    private static final AtomicLong ID_GENERATOR = new AtomicLong();
+
+    private final long id = ID_GENERATOR.incrementAndGet();
+    private final Map<AttributeKey<?>, Object> attributes = new ConcurrentHashMap<>();
+    // 为 null 时不注册，例如单独使用 WorkerThread
+    private final WsRegistry registry;
     private final WorkerThread workerThread;
     private final SocketChannel socketChannel;
     private final WsCallback wsCallback;
     private final List<Plugin> plugins;
+    private final FrameDecoder frameDecoder;
+    private final FrameDecoder.FrameListener frameListener = this::onFrame;
+    // 跨多次读取复用，保存未解析完的半包
+    private RefCountedBuffer readChunk;
+    // 待发送的数据，只由 WorkerThread 访问
+    private final Queue<OutboundFrame> outbound = new ArrayDeque<>();
+    // 待发送的 PING / PONG，插队到未开始发送的数据帧之前；close 帧不插队，排在 outbound 的末尾
+    private final Queue<OutboundFrame> control = new ArrayDeque<>();
+    private final WsConfig config;
+    private final ByteBufferAllocator allocator;
+    private long pendingBytes;
+    private volatile boolean writable = true;
+    private WsEventLoop.Registration registration;
+    private boolean reading;
+    // 正在接收的分片消息类型，为 null 表示当前没有分片消息
+    private FrameType fragmentedType;
+    private final List<Runnable> closeListeners = new CopyOnWriteArrayList<>();
+    // 合并分片消息的 buffer，流式接收时为 null
+    private RefCountedBuffer fragments;
+    private boolean fragmentCompressed;
+    // 校验解压后的文本消息，未压缩的文本消息由 FrameDecoder 校验
+    private Utf8Validator inflatedUtf8;
+    // 握手时协商成功的压缩扩展，为 null 表示不压缩
+    private PerMessageDeflate deflate;
+    // 配置了回调线程池时不为 null，保证同一个连接的回调按顺序执行
+    private final SerialExecutor callbackExecutor;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    // 暂停读取的原因，所有原因都解除后才恢复读取
+    private static final int PAUSE_IN_FLIGHT = 1;
+    private static final int PAUSE_RATE_LIMIT = 1 << 1;
+    private volatile int readPaused;
+    // 限流，为 null 表示不限制
+    private final TokenBucket messageLimiter;
+    private final TokenBucket byteLimiter;
+    // 本次读取超出限流后需要等待的时间
+    private long rateLimitWaitNanos;
+    private HashedTimerWheel.Timeout rateLimitTimeout;
+    // 握手完成之前不为 null
+    private HandshakeParser handshakeParser = new HandshakeParser();
+    private ByteBuffer handshakeBuffer;
+    private HashedTimerWheel.Timeout handshakeTimeout;
+    // 心跳和空闲检测，每个连接同时只有一个定时任务，读写时只更新时间，不操作时间轮
+    private HashedTimerWheel.Timeout idleTimeout;
+    private long lastReadNanos;
+    private long lastWriteNanos;
+    private long pingSentNanos;
+    private boolean awaitingPong;
+    private long acceptNanos;
+    private CloseReason closeReason;
+    private final ConnectionMetrics connectionMetrics = new ConnectionMetrics();
+    // 是否已经回调 onOpen / onClose
+    private boolean opened;
+    private boolean closeNotified;
+    // 发送队列清空之后关闭连接
+    private boolean closeAfterFlush;
+    // close 握手：是否已经发送 / 收到 close 帧，回调 onClose 时使用的状态码
+    private boolean closeSent;
+    private boolean closeReceived;
+    private int closeCode = CloseStatus.ABNORMAL;
+    private String closeReasonText = "";
+    private HashedTimerWheel.Timeout closeTimeout;
 
     public WsContextImpl(WorkerThread workerThread, SocketChannel socketChannel,
                          WsCallback wsCallback, List<Plugin> plugins) {
@@ -31,6 +113,39 @@ public class WsContextImpl implements WsContext {
         this.socketChannel = socketChannel;
         this.wsCallback = wsCallback;
         this.plugins = plugins;
+        this.config = workerThread.getConfig();
+        this.allocator = config.getAllocator();
+        this.frameDecoder = new FrameDecoder(config.getMaxMessageSize());
+        this.callbackExecutor = config.getCallbackExecutor() == null ? null
+                : new SerialExecutor(config.getCallbackExecutor());
+        this.registry = workerThread.getRegistry();
+        long now = workerThread.nanoTime();
+        this.messageLimiter = config.getMaxMessagesPerSecond() > 0
+                ? new TokenBucket(config.getMaxMessagesPerSecond(), now) : null;
+        this.byteLimiter = config.getMaxBytesPerSecond() > 0
+                ? new TokenBucket(config.getMaxBytesPerSecond(), now) : null;
+    }
+
+    @Override
+    public long getId() {
+        return this.id;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T getAttribute(AttributeKey<T> key) {
+        return (T) this.attributes.get(key);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T setAttribute(AttributeKey<T> key, T value) {
+        Objects.requireNonNull(key, "key is empty");
+        T old = (T) (value == null ? this.attributes.remove(key) : this.attributes.put(key, value));
+        if (registry != null && !Objects.equals(old, value)) {
+            registry.onAttributeChanged(this, key, old, value);
+        }
+        return old;
     }
 
     @Override
@@ -40,110 +155,986 @@ public class WsContextImpl implements WsContext {
 
     @Override
     public void write(WsPayload wsPayload) throws IOException {
+        // 发送完成之前持有消息的引用，消息体直接引用原 buffer，不做拷贝
+        wsPayload.retain();
 
-        // https://datatracker.ietf.org/doc/html/rfc6455#section-5.7
-        ByteBuffer metadata = ByteBuffer.allocate(10);
-
-        // 写入flag
-        int opCode = wsPayload.getFrameType().getOpCode();
-        // 0x80 => 1000 0000
-        // text frame type => 0000 0001
-        // 0x80 | text frame type  => 1000 0001
-        // (byte)(1000 0001) => -127
-        metadata.put((byte) (0x80 | opCode));
-
-        // write payload length
-        long length = wsPayload.getDataLength();
-        if (length <= 125) {
-            metadata.put((byte) length);
-        } else if (length <= 0xFFFF) {
-            // data range 126 - 0xFFFF
-            metadata.put((byte)  0x7E);
-            // write unsigned short
-            metadata.putShort((short) length);
+        if (workerThread.inWorkerThread()) {
+            enqueue(wsPayload, null);
+            if (!reading) {
+                flush();
+            }
         } else {
-            // data range > 0xFFFF
-            metadata.put((byte)  0x7F);
-            // write unsigned long
-            metadata.putLong(length);
+            // 非 WorkerThread 调用时交给所属的 WorkerThread 发送，保证帧不会交错
+            workerThread.execute(() -> {
+                enqueue(wsPayload, null);
+                flushOrClose();
+            });
         }
+    }
+
+    @Override
+    public CompletableFuture<Void> send(WsPayload wsPayload) {
+        Objects.requireNonNull(wsPayload, "wsPayload is empty");
+        CompletableFuture<Void> promise = new CompletableFuture<>();
+        wsPayload.retain();
 
+        if (workerThread.inWorkerThread()) {
+            enqueue(wsPayload, promise);
+            if (!reading) {
+                flushOrClose();
+            }
+        } else {
+            workerThread.execute(() -> {
+                enqueue(wsPayload, promise);
+                flushOrClose();
+            });
+        }
+        return promise;
+    }
+
+    void flushOrClose() {
+        try {
+            flush();
+        } catch (IOException e) {
+            logger.warn("write to {} failed: {}", socketChannel, e.getMessage());
+            closeChannel(CloseReason.IO_ERROR);
+        }
+    }
+
+    private ByteBuffer encodeHeader(boolean fin, int rsv, FrameType frameType, long length) {
+        ByteBuffer metadata = allocator.allocate(FrameEncoder.MAX_HEADER_LENGTH);
+        FrameEncoder.writeHeader(metadata, fin, rsv, frameType, length);
         // flip 一下才能写出数据
         metadata.flip();
+        return metadata;
+    }
+
+    /**
+     * @param promise 不为 null 时在消息的最后一帧发送完成后完成，连接关闭时以 ClosedChannelException 失败
+     */
+    private void enqueue(WsPayload wsPayload, CompletableFuture<Void> promise) {
+        // 发送 close 帧之后不能再发送数据帧
+        if (!socketChannel.isOpen() || closeSent) {
+            wsPayload.release();
+            fail(promise);
+            return;
+        }
+        if (wsPayload instanceof PreparedWsPayload) {
+            PreparedWsPayload prepared = (PreparedWsPayload) wsPayload;
+            enqueueEncoded(prepared.frame(deflate), prepared.getFrameType(), promise);
+            return;
+        }
+        if (wsPayload instanceof TextWsPayload && !((TextWsPayload) wsPayload).isEncoded()) {
+            wsPayload = encodeText((TextWsPayload) wsPayload);
+        }
+
+        ByteBuffer data = wsPayload.getBuffer();
+        int rsv = 0;
+        if (deflate != null && deflate.shouldCompress(wsPayload.getFrameType(), data.remaining())) {
+            RefCountedBuffer compressed;
+            try {
+                compressed = deflate.deflate(data, allocator);
+            } catch (IOException e) {
+                logger.warn("deflate message failed: {}", e.getMessage());
+                wsPayload.release();
+                fail(promise);
+                closeChannel(CloseReason.IO_ERROR);
+                return;
+            }
+            // 发送压缩后的消息，原消息不再需要
+            WsPayload compressedPayload = new BufferWsPayload(wsPayload.getFrameType(), compressed.buffer, compressed);
+            compressed.release();
+            wsPayload.release();
+            wsPayload = compressedPayload;
+            data = wsPayload.getBuffer();
+            rsv = PerMessageDeflate.RSV1;
+        }
+
+        recordMessageOut(wsPayload.getFrameType());
+        int fragmentSize = config.getFragmentSize();
+        if (fragmentSize <= 0 || data.remaining() <= fragmentSize) {
+            workerThread.getMetrics().recordFrameOut(wsPayload.getFrameType());
+            offer(new OutboundFrame(encodeHeader(true, rsv, wsPayload.getFrameType(), data.remaining()), data,
+                    wsPayload, promise));
+        } else {
+            // 大消息拆分成多个帧发送：第一帧为原类型，后续为 CONTINUATION，最后一帧设置 FIN
+            FrameType frameType = wsPayload.getFrameType();
+            while (data.hasRemaining()) {
+                int length = Math.min(fragmentSize, data.remaining());
+                ByteBuffer fragment = data.duplicate();
+                fragment.limit(fragment.position() + length);
+                data.position(data.position() + length);
+
+                boolean fin = !data.hasRemaining();
+                if (!fin) {
+                    // 每个分片都持有一次引用，全部发送完成后消息才被释放
+                    wsPayload.retain();
+                }
+                workerThread.getMetrics().recordFrameOut(frameType);
+                offer(new OutboundFrame(encodeHeader(fin, rsv, frameType, length), fragment.slice(), wsPayload,
+                        fin ? promise : null));
+                // RSV1 只设置在第一帧
+                frameType = FrameType.CONTINUATION;
+                rsv = 0;
+            }
+        }
+
+        checkWritability();
+    }
+
+    /**
+     * 文本直接编码到 allocator 分配的 buffer 中，原消息不再需要
+     */
+    private WsPayload encodeText(TextWsPayload text) {
+        CharSequence chars = text.getCharSequence();
+        RefCountedBuffer encoded = new RefCountedBuffer(allocator, TextWsPayload.utf8Length(chars));
+        CharsetEncoder encoder = workerThread.getUtf8Encoder().reset();
+        encoder.encode(CharBuffer.wrap(chars), encoded.buffer, true);
+        encoder.flush(encoded.buffer);
+        encoded.buffer.flip();
+        try {
+            return new TextWsPayload(encoded.buffer, encoded);
+        } finally {
+            encoded.release();
+            text.release();
+        }
+    }
+
+    /**
+     * 发送已经编码好的帧，只能在 WorkerThread 中调用，调用方负责 flush
+     */
+    boolean enqueueEncoded(ByteBuffer encoded, FrameType frameType) {
+        return enqueueEncoded(encoded, frameType, null);
+    }
+
+    private boolean enqueueEncoded(ByteBuffer encoded, FrameType frameType, CompletableFuture<Void> promise) {
+        if (!socketChannel.isOpen() || closeSent) {
+            fail(promise);
+            return false;
+        }
+
+        recordMessageOut(frameType);
+        workerThread.getMetrics().recordFrameOut(frameType);
+        offer(new OutboundFrame(null, encoded, null, promise));
+        checkWritability();
+        return true;
+    }
+
+    /**
+     * 发送预先编码好的消息，只能在 WorkerThread 中调用，调用方负责 flush
+     */
+    boolean enqueuePrepared(PreparedWsPayload prepared) {
+        return enqueueEncoded(prepared.frame(deflate), prepared.getFrameType());
+    }
+
+    private static void fail(CompletableFuture<Void> promise) {
+        if (promise != null) {
+            promise.completeExceptionally(new ClosedChannelException());
+        }
+    }
+
+    private void recordMessageOut(FrameType frameType) {
+        // 控制帧不计入消息数
+        if (frameType.getOpCode() < FrameType.CLOSE_CONNECTION.getOpCode()) {
+            workerThread.getMetrics().recordMessageOut();
+            connectionMetrics.recordMessageOut();
+        }
+    }
+
+    private void checkWritability() {
+        if (writable && pendingBytes > config.getWriteBufferHighWaterMark()) {
+            writable = false;
+            wsCallback.onWritabilityChanged(this);
+        }
+    }
+
+    private void offer(OutboundFrame frame) {
+        outbound.offer(frame);
+        pendingBytes += frame.remaining();
+    }
+
+    /**
+     * 发送控制帧，只能在 WorkerThread 中调用，调用方负责 flush。
+     * PING / PONG 排在正在发送的数据帧之后、其它数据帧之前，大消息发送期间也能及时回复 PONG；
+     * close 帧之后不能再发送数据帧（RFC 6455 5.5.1），所以排在所有已经入队的数据帧（包括分片）之后
+     */
+    private void sendControl(FrameType frameType, ByteBuffer payload) {
+        if (!socketChannel.isOpen() || closeSent) {
+            return;
+        }
+
+        workerThread.getMetrics().recordFrameOut(frameType);
+        OutboundFrame frame = new OutboundFrame(encodeHeader(true, 0, frameType, payload.remaining()), payload,
+                null);
+        if (frameType == FrameType.CLOSE_CONNECTION) {
+            outbound.offer(frame);
+        } else {
+            control.offer(frame);
+        }
+        pendingBytes += frame.remaining();
+    }
+
+    private void sendClose(int code, String reason) {
+        ByteBuffer payload;
+        if (code == CloseStatus.NO_STATUS) {
+            // 客户端没有发送状态码，回复空的 close 帧
+            payload = ByteBuffer.allocate(0);
+        } else {
+            byte[] reasonBytes = reason.getBytes(StandardCharsets.UTF_8);
+            while (reasonBytes.length > CloseStatus.MAX_REASON_LENGTH) {
+                // 按字符截断，避免截断后不是合法的 UTF-8
+                reason = reason.substring(0, reason.offsetByCodePoints(reason.length(), -1));
+                reasonBytes = reason.getBytes(StandardCharsets.UTF_8);
+            }
+            payload = ByteBuffer.allocate(2 + reasonBytes.length);
+            payload.putShort((short) code).put(reasonBytes).flip();
+        }
+        sendControl(FrameType.CLOSE_CONNECTION, payload);
+        closeSent = true;
 
-        this.socketChannel.write(metadata);
-        this.socketChannel.write(ByteBuffer.wrap(wsPayload.getData()));
+        // 对端一直不回复 close 帧或者不读取数据时，超时后直接关闭
+        closeTimeout = workerThread.getTimer().schedule(() -> closeChannel(CloseReason.SERVER_CLOSE),
+                TimeUnit.MILLISECONDS.toNanos(config.getCloseTimeoutMillis()), workerThread.nanoTime());
+    }
 
+    private boolean hasPending() {
+        return !outbound.isEmpty() || !control.isEmpty();
     }
 
-    private byte[] decode(ByteBuffer data) {
+    @Override
+    public void flush() throws IOException {
+        ByteBuffer[] buffers = workerThread.getGatheringBuffers();
+        while (hasPending()) {
+            // 将队列中的帧头和消息体一次性写出（writev），减少系统调用次数
+            // 发送顺序：已经发送了一部分的数据帧（不能被打断）、PING / PONG、其余数据帧（close 帧在最后）
+            int count = 0;
+            long expected = 0;
+            OutboundFrame head = outbound.peek();
+            boolean headStarted = head != null && head.isStarted();
+            if (headStarted) {
+                count = gather(head, buffers, count);
+                expected += head.remaining();
+            }
+            boolean full = false;
+            for (OutboundFrame frame : control) {
+                if (count + 2 > buffers.length) {
+                    full = true;
+                    break;
+                }
+                count = gather(frame, buffers, count);
+                expected += frame.remaining();
+            }
+            if (!full) {
+                for (OutboundFrame frame : outbound) {
+                    if (headStarted && frame == head) {
+                        continue;
+                    }
+                    if (count + 2 > buffers.length) {
+                        break;
+                    }
+                    count = gather(frame, buffers, count);
+                    expected += frame.remaining();
+                }
+            }
 
-        // 获取消息长度
-        long payloadLen = getPayloadLen(data);
+            long n;
+            try {
+                n = socketChannel.write(buffers, 0, count);
+            } finally {
+                Arrays.fill(buffers, 0, count, null);
+            }
+            pendingBytes -= n;
+            if (n > 0) {
+                lastWriteNanos = workerThread.nanoTime();
+                workerThread.getMetrics().recordBytesOut(n);
+                connectionMetrics.recordBytesOut(n);
+            }
 
-        // 获取密匙
-        // key：[79, 43, -40, -15]
-        byte[] key = new byte[4];
-        data.get(key);
+            // 移除已经发送完的帧，归还帧头 buffer 并释放消息
+            removeDone(control);
+            removeDone(outbound);
 
-        // 获取消息体
-        // payload：[46, 73, -69, -107]
-        byte[] payload = new byte[(int) payloadLen];
-        data.get(payload);
+            if (n < expected) {
+                // 发送缓冲区已满，等待可写事件后继续发送
+                setInterestOps(WsEventLoop.OP_WRITE, true);
+                break;
+            }
+        }
 
-        // key：[79, 43, -40, -15]   (& 0xFF)=> [79, 43, 216, 241]
-        // payload：[46, 73, -69, -107] (& 0xFF)=> [46, 73, 187, 149]
-        // decode payload: => (byte) (payload[i] ^ key[i & 0x3])
-        for (int i = 0; i < payload.length; i++) {
-            payload[i] = (byte) ((payload[i] & 0xFF) ^ (key[i & 0x3] & 0xFF));
+        if (!hasPending()) {
+            setInterestOps(WsEventLoop.OP_WRITE, false);
+            if (closeAfterFlush) {
+                closeChannel(closeReason);
+                return;
+            }
         }
 
-        return payload;
+        if (!writable && pendingBytes < config.getWriteBufferLowWaterMark()) {
+            writable = true;
+            wsCallback.onWritabilityChanged(this);
+        }
+    }
+
+    private static int gather(OutboundFrame frame, ByteBuffer[] buffers, int count) {
+        if (frame.header != null) {
+            buffers[count++] = frame.header;
+        }
+        buffers[count++] = frame.payload;
+        return count;
+    }
+
+    private void removeDone(Queue<OutboundFrame> queue) {
+        OutboundFrame head;
+        while ((head = queue.peek()) != null && head.isDone()) {
+            queue.poll();
+            head.release(allocator);
+            if (head.promise != null) {
+                head.promise.complete(null);
+            }
+        }
+    }
+
+    private void setInterestOps(int ops, boolean enable) {
+        if (registration == null || !registration.isValid()) {
+            return;
+        }
+
+        int interestOps = registration.interestOps();
+        int newOps = enable ? interestOps | ops : interestOps & ~ops;
+        if (newOps != interestOps) {
+            registration.interestOps(newOps);
+        }
+    }
+
+    @Override
+    public boolean isWritable() {
+        return this.writable;
+    }
+
+    long getPendingBytes() {
+        return this.pendingBytes;
+    }
+
+    int getInFlightMessages() {
+        return this.inFlight.get();
+    }
+
+    @Override
+    public ConnectionMetrics getMetrics() {
+        return this.connectionMetrics;
+    }
+
+    void setRegistration(WsEventLoop.Registration registration) {
+        this.registration = registration;
     }
 
     @Override
     public void handlerPayload() throws IOException {
-        ByteBuffer byteBuffer = ByteBuffer.allocate(1024);
-        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        lastReadNanos = workerThread.nanoTime();
+        // 握手请求之后已经到达的数据帧需要先解析
+        boolean decodePending = false;
+        if (handshakeParser != null) {
+            if (!readHandshake()) {
+                return;
+            }
+            decodePending = readChunk != null;
+        } else if (!opened) {
+            // 握手失败，等待错误响应发送完成后关闭，之后收到的数据不能当作数据帧解析
+            return;
+        }
 
-        int len;
-        // -1 or 0 => EOF
-        while ((len = socketChannel.read(byteBuffer)) > 0) {
-            bos.write(byteBuffer.array(), 0, len);
-            byteBuffer.clear();
+        if (readChunk == null) {
+            readChunk = new RefCountedBuffer(allocator, config.getReadBufferSize());
         }
 
-        ByteBuffer data = ByteBuffer.wrap(bos.toByteArray());
-        if (logger.isDebugEnabled()) {
-            logger.debug("message body：{}", Arrays.toString(data.array()));
+        int len = 0;
+        // 读取期间产生的响应先放入队列，读完之后一起发送
+        reading = true;
+        try {
+            // 0 => 数据已读完；-1 => EOF
+            while (socketChannel.isOpen() && readPaused == 0
+                    && (decodePending || (len = socketChannel.read(readChunk.buffer)) > 0)) {
+                decodePending = false;
+                if (len > 0) {
+                    workerThread.getMetrics().recordBytesIn(len);
+                    connectionMetrics.recordBytesIn(len);
+                    acquire(byteLimiter, workerThread.getGlobalByteLimiter(), len);
+                }
+                ByteBuffer readBuffer = readChunk.buffer;
+                readBuffer.flip();
+                if (logger.isDebugEnabled()) {
+                    logger.debug("read {} bytes from {}", len, getRemoteAddress());
+                }
+                // 解析出 buffer 中所有完整的帧，剩余的半包留到下次读取
+                frameDecoder.decode(readBuffer, frameListener);
+                prepareReadBuffer();
+                if (rateLimitWaitNanos > 0) {
+                    pauseForRateLimit();
+                }
+            }
+        } finally {
+            reading = false;
+            // 没有半包或者连接已关闭时归还 buffer，空闲连接不占用读缓冲区
+            if (readChunk.buffer.position() == 0 || !socketChannel.isOpen()) {
+                readChunk.release();
+                readChunk = null;
+            }
+        }
+
+        if (hasPending()) {
+            flush();
+        }
+
+        if (len < 0) {
+            closeChannel(CloseReason.EOF);
+        }
+    }
+
+    /**
+     * 读取并解析握手请求，握手完成返回 true
+     */
+    private boolean readHandshake() throws IOException {
+        if (handshakeBuffer == null) {
+            handshakeBuffer = allocator.allocate(config.getMaxHandshakeSize());
+        }
+
+        int len = socketChannel.read(handshakeBuffer);
+        if (len < 0) {
+            closeChannel(CloseReason.EOF);
+            return false;
+        }
+        workerThread.getMetrics().recordBytesIn(len);
+        connectionMetrics.recordBytesIn(len);
+
+        handshakeBuffer.flip();
+        try {
+            if (!handshakeParser.parse(handshakeBuffer)) {
+                if (handshakeBuffer.limit() == handshakeBuffer.capacity()) {
+                    throw new HandshakeException(431, "handshake request too large");
+                }
+                // 请求头还没有接收完，继续读取
+                handshakeBuffer.position(handshakeBuffer.limit()).limit(handshakeBuffer.capacity());
+                return false;
+            }
+        } catch (HandshakeException e) {
+            logger.warn("{} handshake failed: {}", socketChannel.getRemoteAddress(), e.getMessage());
+            handshakeParser = null;
+            releaseHandshakeBuffer();
+            writeRaw(HandshakeParser.errorResponse(e));
+            closeReason = CloseReason.HANDSHAKE_FAILED;
+            closeAfterFlush = true;
+            setInterestOps(WsEventLoop.OP_READ, false);
+            flush();
+            return false;
+        }
+
+        // write handshake packet
+        deflate = PerMessageDeflate.negotiate(handshakeParser.getExtensions(), config.getPerMessageDeflate());
+        writeRaw(handshakeParser.response(deflate == null ? null : deflate.getResponse()));
+        handshakeParser = null;
+        if (handshakeBuffer.hasRemaining()) {
+            readChunk = new RefCountedBuffer(allocator, Math.max(handshakeBuffer.remaining(),
+                    config.getReadBufferSize()));
+            readChunk.buffer.put(handshakeBuffer);
+        }
+        releaseHandshakeBuffer();
+        handshakeTimeout.cancel();
+        handshakeTimeout = null;
+        lastReadNanos = lastWriteNanos = workerThread.nanoTime();
+        scheduleIdleCheck(lastReadNanos);
+
+        opened = true;
+        workerThread.getMetrics().recordHandshake(System.nanoTime() - acceptNanos);
+        workerThread.onHandshakeComplete(this);
+        return true;
+    }
+
+    private void writeRaw(String response) {
+        offer(new OutboundFrame(ByteBuffer.wrap(response.getBytes(StandardCharsets.US_ASCII))));
+    }
+
+    private void releaseHandshakeBuffer() {
+        if (handshakeBuffer != null) {
+            allocator.release(handshakeBuffer);
+            handshakeBuffer = null;
+        }
+    }
+
+    /**
+     * 开始握手，acceptNanos 为接收连接的时间，握手超时和握手耗时都从该时间开始计算
+     */
+    void startHandshake(long acceptNanos) {
+        this.acceptNanos = acceptNanos;
+        long timeout = TimeUnit.MILLISECONDS.toNanos(config.getHandshakeTimeoutMillis());
+        long now = workerThread.nanoTime();
+        handshakeTimeout = workerThread.getTimer().schedule(() -> {
+            logger.warn("{} handshake timeout", socketChannel);
+            closeChannel(CloseReason.HANDSHAKE_TIMEOUT);
+        }, acceptNanos + timeout - now, now);
+    }
+
+    /**
+     * 根据最近的读写时间安排下一次检查，都未开启时不安排
+     */
+    private void scheduleIdleCheck(long now) {
+        long pingInterval = TimeUnit.MILLISECONDS.toNanos(config.getPingIntervalMillis());
+        long idleTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(config.getIdleTimeoutMillis());
+        if (pingInterval <= 0 && idleTimeoutNanos <= 0) {
+            return;
+        }
+
+        long deadline = Long.MAX_VALUE;
+        if (pingInterval > 0) {
+            deadline = awaitingPong ? pingSentNanos + TimeUnit.MILLISECONDS.toNanos(config.getPongTimeoutMillis())
+                    : lastReadNanos + pingInterval;
+        }
+        if (idleTimeoutNanos > 0) {
+            deadline = Math.min(deadline, Math.max(lastReadNanos, lastWriteNanos) + idleTimeoutNanos);
+        }
+        idleTimeout = workerThread.getTimer().schedule(this::onIdleCheck, deadline - now, now);
+    }
+
+    private void onIdleCheck() {
+        idleTimeout = null;
+        if (!socketChannel.isOpen()) {
+            return;
+        }
+
+        long now = workerThread.nanoTime();
+        long idleTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(config.getIdleTimeoutMillis());
+        if (idleTimeoutNanos > 0 && now - Math.max(lastReadNanos, lastWriteNanos) >= idleTimeoutNanos) {
+            logger.warn("{} idle timeout, close connection", socketChannel);
+            closeChannel(CloseReason.IDLE_TIMEOUT);
+            return;
+        }
+
+        long pingInterval = TimeUnit.MILLISECONDS.toNanos(config.getPingIntervalMillis());
+        if (pingInterval > 0) {
+            if (awaitingPong) {
+                // 发送 PING 之后收到任何数据都说明对端存活
+                if (lastReadNanos - pingSentNanos > 0) {
+                    awaitingPong = false;
+                } else if (now - pingSentNanos >= TimeUnit.MILLISECONDS.toNanos(config.getPongTimeoutMillis())) {
+                    logger.warn("{} pong timeout, close connection", socketChannel);
+                    closeChannel(CloseReason.PONG_TIMEOUT);
+                    return;
+                }
+            }
+            if (!awaitingPong && now - lastReadNanos >= pingInterval) {
+                sendControl(FrameType.PING, ByteBuffer.allocate(0));
+                flushOrClose();
+                awaitingPong = true;
+                pingSentNanos = now;
+            }
+        }
+
+        if (socketChannel.isOpen()) {
+            scheduleIdleCheck(now);
+        }
+    }
+
+    /**
+     * 为下一次读取准备 buffer：半包数据移动到 buffer 开头，半包占满了 buffer 时扩容。
+     * 扩容按实际收到的数据翻倍，不超过当前帧的长度，不按帧头声明的长度预先分配，避免只发送帧头的连接占用大量内存。
+     * 如果 buffer 中还有消息被引用（例如等待发送的响应），换一个新的 buffer，避免覆盖这些消息
+     */
+    private void prepareReadBuffer() {
+        ByteBuffer readBuffer = readChunk.buffer;
+        int remaining = readBuffer.remaining();
+        boolean full = remaining == readBuffer.capacity();
+        if (readChunk.refCnt() == 1 && !full) {
+            readBuffer.compact();
+            return;
+        }
+
+        long capacity = full
+                ? Math.min((long) remaining << 1, Math.max(frameDecoder.getRequiredCapacity(), remaining + 1))
+                : Math.min(readBuffer.capacity(), (long) remaining << 1);
+        RefCountedBuffer chunk = new RefCountedBuffer(allocator, (int) Math.max(capacity, config.getReadBufferSize()));
+        chunk.buffer.put(readBuffer);
+        readChunk.release();
+        readChunk = chunk;
+    }
+
+    private void onFrame(boolean fin, int rsv, FrameType frameType, ByteBuffer payload) throws IOException {
+        if (!socketChannel.isOpen() || closeReceived) {
+            // 连接已关闭或者已经收到 close 帧，丢弃剩余的帧
+            return;
+        }
+        workerThread.getMetrics().recordFrameIn(frameType);
+
+        // 只有协商了 permessage-deflate 时，消息的第一帧才能设置 RSV1
+        boolean compressed = (rsv & PerMessageDeflate.RSV1) != 0;
+        if ((rsv & ~PerMessageDeflate.RSV1) != 0 || compressed
+                && (deflate == null || frameType != FrameType.TEXT && frameType != FrameType.BINARY)) {
+            throw new WsProtocolException("unexpected rsv bits: " + rsv);
         }
 
         // 解析数据帧
-        switch (parseFrame(data.get())) {
+        switch (frameType) {
             // 消息
             case TEXT:
-                // 解码消息
-                WsPayload request = new DefaultWsPayload(FrameType.TEXT, decode(data));
-                WsPayload response = wsCallback.onMessage(this, callInterceptRequest(request));
-                write(callInterceptResponse(response));
-                break;
             case BINARY:
-                // 解码消息
-                request = new DefaultWsPayload(FrameType.BINARY, decode(data));
-                response = wsCallback.onMessage(this, callInterceptRequest(request));
-                write(callInterceptResponse(response));
+                if (fragmentedType != null) {
+                    throw new WsProtocolException("expected continuation frame, but got " + frameType);
+                }
+                if (fin) {
+                    onMessage(compressed ? inflate(frameType, payload, true, true)
+                            : newPayload(frameType, payload, readChunk));
+                } else {
+                    // 分片消息的第一帧
+                    fragmentedType = frameType;
+                    fragmentCompressed = compressed;
+                    onFragment(payload, false);
+                }
+                break;
+            case CONTINUATION:
+                if (fragmentedType == null) {
+                    throw new WsProtocolException("unexpected continuation frame");
+                }
+                onFragment(payload, fin);
                 break;
             case PING:
-                wsCallback.onPing(this);
+                // 自动回复 PONG，payload 原样返回；payload 引用读缓冲区，需要拷贝
+                sendControl(FrameType.PONG, ByteBuffer.allocate(payload.remaining()).put(payload).flip());
+                dispatch(() -> wsCallback.onPing(this));
+                break;
+            case PONG:
+                awaitingPong = false;
+                dispatch(() -> wsCallback.onPong(this));
                 break;
             // 用户关闭 ws 链接
             case CLOSE_CONNECTION:
-                wsCallback.onClose(this);
-                close();
+                onCloseFrame(payload);
                 break;
             default:
+                throw new WsProtocolException("reserved opcode: " + frameType);
+        }
+    }
+
+    /**
+     * 收到 close 帧：客户端发起时回复 close 帧后关闭连接；服务端发起时说明握手完成，直接关闭连接
+     */
+    private void onCloseFrame(ByteBuffer payload) throws WsProtocolException {
+        int code = CloseStatus.NO_STATUS;
+        String reason = "";
+        if (payload.remaining() == 1) {
+            throw new WsProtocolException("illegal close frame payload length: 1");
+        }
+        if (payload.remaining() >= 2) {
+            code = payload.getShort() & 0xFFFF;
+            if (!CloseStatus.isValid(code)) {
+                throw new WsProtocolException("illegal close code: " + code);
+            }
+            try {
+                reason = StandardCharsets.UTF_8.newDecoder().decode(payload).toString();
+            } catch (CharacterCodingException e) {
+                throw new WsProtocolException(CloseStatus.INVALID_PAYLOAD, "close reason is not valid UTF-8");
+            }
+        }
+        closeReceived = true;
+
+        if (closeSent) {
+            closeChannel(CloseReason.SERVER_CLOSE);
+            return;
+        }
+
+        closeCode = code;
+        closeReasonText = reason;
+        // 状态码原样返回
+        sendClose(code, "");
+        closeReason = CloseReason.CLIENT_CLOSE;
+        closeAfterFlush = true;
+    }
+
+    /**
+     * 客户端违反协议：发送带状态码的 close 帧，不再读取数据，发送完成后关闭连接
+     */
+    void failConnection(WsProtocolException e) {
+        if (!socketChannel.isOpen()) {
+            return;
+        }
+
+        logger.warn("{} protocol error, close connection: {}", socketChannel, e.getMessage());
+        failConnection(e.getCloseCode(), e.getMessage(), CloseReason.PROTOCOL_ERROR);
+    }
+
+    /**
+     * 回调抛出的异常、回调线程池拒绝执行等内部错误，只以 1011 关闭当前连接，不影响 WorkerThread 上的其它连接
+     */
+    void failConnection(RuntimeException e) {
+        if (!socketChannel.isOpen()) {
+            return;
+        }
+
+        logger.error("{} internal error, close connection", socketChannel, e);
+        failConnection(CloseStatus.INTERNAL_ERROR, "internal error", CloseReason.INTERNAL_ERROR);
+    }
+
+    private void failConnection(int code, String reasonText, CloseReason reason) {
+        if (!opened || closeSent) {
+            closeChannel(reason);
+            return;
+        }
+
+        closeCode = code;
+        closeReasonText = reasonText == null ? "" : reasonText;
+        sendClose(closeCode, closeReasonText);
+        closeReason = reason;
+        closeAfterFlush = true;
+        setInterestOps(WsEventLoop.OP_READ, false);
+        flushOrClose();
+    }
+
+    /**
+     * @param whole 是否为完整的消息，流式接收的分片可能截断字符，不创建 TextWsPayload
+     */
+    private WsPayload inflate(FrameType frameType, ByteBuffer payload, boolean last, boolean whole)
+            throws IOException {
+        RefCountedBuffer inflated = deflate.inflate(payload, last, config.getMaxMessageSize(), allocator);
+        try {
+            if (frameType == FrameType.TEXT) {
+                validateInflatedText(inflated.buffer, last);
+            }
+            return whole ? newPayload(frameType, inflated.buffer, inflated)
+                    : new BufferWsPayload(frameType, inflated.buffer, inflated);
+        } finally {
+            inflated.release();
+        }
+    }
+
+    private void validateInflatedText(ByteBuffer text, boolean last) throws WsProtocolException {
+        if (inflatedUtf8 == null) {
+            inflatedUtf8 = new Utf8Validator();
+        }
+        if (!inflatedUtf8.update(text, text.position(), text.limit()) || last && !inflatedUtf8.isComplete()) {
+            throw new WsProtocolException(CloseStatus.INVALID_PAYLOAD, "invalid UTF-8 text message");
+        }
+        if (last) {
+            inflatedUtf8.reset();
+        }
+    }
+
+    private static WsPayload newPayload(FrameType frameType, ByteBuffer payload, RefCountedBuffer owner) {
+        return frameType == FrameType.TEXT ? new TextWsPayload(payload, owner)
+                : new BufferWsPayload(frameType, payload, owner);
+    }
+
+    private void onMessage(WsPayload request) throws IOException {
+        workerThread.getMetrics().recordMessageIn();
+        connectionMetrics.recordMessageIn();
+        acquire(messageLimiter, workerThread.getGlobalMessageLimiter(), 1);
+        if (callbackExecutor == null) {
+            try {
+                handleMessage(request);
+            } finally {
+                request.release();
+            }
+            return;
+        }
+
+        // 在回调线程池中处理，消息的引用交给任务，处理完成后释放
+        dispatchMessage(request, () -> {
+            try {
+                handleMessage(request);
+            } catch (IOException e) {
+                logger.warn("write response to {} failed: {}", socketChannel, e.getMessage());
+            } catch (RuntimeException e) {
+                // 与在 WorkerThread 中执行回调时一致，以 1011 关闭连接
+                workerThread.execute(() -> failConnection(e));
+            } finally {
+                request.release();
+            }
+        });
+    }
+
+    private void handleMessage(WsPayload request) throws IOException {
+        long start = System.nanoTime();
+        WsPayload response = wsCallback.onMessage(this, callInterceptRequest(request));
+        workerThread.getMetrics().recordMessageLatency(System.nanoTime() - start);
+        // 返回 null 表示不需要回复
+        if (response == null) {
+            return;
+        }
+        response = callInterceptResponse(response);
+        if (response != null) {
+            write(response);
+        }
+    }
+
+    /**
+     * 正在处理的消息数达到上限时暂停读取，处理完成后恢复。
+     * 回调线程池拒绝执行时 SerialExecutor 已经撤回任务，由这里释放消息，异常交给 WorkerThread 以 1011 关闭连接
+     */
+    private void dispatchMessage(WsPayload payload, Runnable task) {
+        if (inFlight.incrementAndGet() >= config.getMaxInFlightMessages()) {
+            pauseRead(PAUSE_IN_FLIGHT);
+            // 暂停期间消息可能已经处理完
+            resumeInFlight();
+        }
+        try {
+            callbackExecutor.execute(() -> {
+                try {
+                    task.run();
+                } finally {
+                    if (inFlight.decrementAndGet() < config.getMaxInFlightMessages()
+                            && (readPaused & PAUSE_IN_FLIGHT) != 0) {
+                        workerThread.execute(this::resumeInFlight);
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            inFlight.decrementAndGet();
+            payload.release();
+            throw e;
+        }
+    }
+
+    /**
+     * onOpen、onPing、onClose 等回调，配置了回调线程池时与消息回调按顺序执行。
+     * 回调线程池拒绝执行时与消息回调一样以 1011 关闭连接；不抛出异常，不能中断关闭连接等流程
+     */
+    private void dispatch(Runnable task) {
+        if (callbackExecutor == null) {
+            task.run();
+            return;
+        }
+        try {
+            callbackExecutor.execute(task);
+        } catch (RejectedExecutionException e) {
+            if (socketChannel.isOpen()) {
+                failConnection(e);
+            } else {
+                // 连接已经关闭（例如 onClose），只能丢弃回调
+                logger.warn("callback executor rejected task for {}: {}", socketChannel, e.getMessage());
+            }
+        }
+    }
+
+    private void pauseRead(int reason) {
+        readPaused |= reason;
+        setInterestOps(WsEventLoop.OP_READ, false);
+    }
+
+    private void resumeRead(int reason) {
+        if ((readPaused & reason) == 0) {
+            return;
         }
+        readPaused &= ~reason;
+        // 协议错误等待关闭时不再恢复读取
+        if (readPaused == 0 && socketChannel.isOpen() && !closeAfterFlush) {
+            setInterestOps(WsEventLoop.OP_READ, true);
+        }
+    }
 
+    private void resumeInFlight() {
+        if (inFlight.get() < config.getMaxInFlightMessages()) {
+            resumeRead(PAUSE_IN_FLIGHT);
+        }
+    }
+
+    /**
+     * 消费连接和全局的令牌，超出限制时记录需要等待的时间，读完当前 buffer 后暂停读取。
+     * 已经读到的数据照常处理，不丢弃消息
+     */
+    private void acquire(TokenBucket limiter, TokenBucket globalLimiter, long tokens) {
+        long now = workerThread.nanoTime();
+        if (limiter != null) {
+            rateLimitWaitNanos = Math.max(rateLimitWaitNanos, limiter.consume(tokens, now));
+        }
+        if (globalLimiter != null) {
+            rateLimitWaitNanos = Math.max(rateLimitWaitNanos, globalLimiter.consume(tokens, now));
+        }
+    }
+
+    /**
+     * 取消 OP_READ，令牌恢复后再继续读取
+     */
+    private void pauseForRateLimit() {
+        long now = workerThread.nanoTime();
+        pauseRead(PAUSE_RATE_LIMIT);
+        rateLimitTimeout = workerThread.getTimer().schedule(() -> {
+            rateLimitTimeout = null;
+            resumeRead(PAUSE_RATE_LIMIT);
+        }, rateLimitWaitNanos, now);
+        rateLimitWaitNanos = 0;
+        if (logger.isDebugEnabled()) {
+            logger.debug("{} exceeds rate limit, pause reading", socketChannel);
+        }
+    }
+
+    void fireOpen() {
+        dispatch(() -> wsCallback.onOpen(this));
+    }
+
+    private void onFragment(ByteBuffer payload, boolean last) throws IOException {
+        FrameType frameType = fragmentedType;
+        if (last) {
+            fragmentedType = null;
+        }
+
+        if (config.isFragmentStreaming()) {
+            if (last) {
+                workerThread.getMetrics().recordMessageIn();
+                connectionMetrics.recordMessageIn();
+            }
+            // 流式接收，分片直接引用读缓冲区，不做合并；压缩的消息逐个分片解压
+            WsPayload fragment = fragmentCompressed ? inflate(frameType, payload, last, false)
+                    : new BufferWsPayload(frameType, payload, readChunk);
+            if (callbackExecutor == null) {
+                try {
+                    wsCallback.onFragment(this, fragment, last);
+                } finally {
+                    fragment.release();
+                }
+            } else {
+                dispatchMessage(fragment, () -> {
+                    try {
+                        wsCallback.onFragment(this, fragment, last);
+                    } catch (RuntimeException e) {
+                        workerThread.execute(() -> failConnection(e));
+                    } finally {
+                        fragment.release();
+                    }
+                });
+            }
+            return;
+        }
+
+        appendFragment(payload);
+        if (last) {
+            RefCountedBuffer message = fragments;
+            fragments = null;
+            message.buffer.flip();
+            try {
+                onMessage(fragmentCompressed ? inflate(frameType, message.buffer, true, true)
+                        : newPayload(frameType, message.buffer, message));
+            } finally {
+                message.release();
+            }
+        }
+    }
+
+    private void appendFragment(ByteBuffer payload) throws IOException {
+        int size = (fragments == null ? 0 : fragments.buffer.position()) + payload.remaining();
+        if (size > config.getMaxMessageSize()) {
+            throw new WsProtocolException(CloseStatus.MESSAGE_TOO_BIG,
+                    "message too large, max message size: " + config.getMaxMessageSize());
+        }
+
+        if (fragments == null) {
+            fragments = new RefCountedBuffer(allocator, Math.max(size, config.getReadBufferSize()));
+        } else if (fragments.buffer.remaining() < payload.remaining()) {
+            // 按两倍扩容，不超过最大消息长度
+            int capacity = (int) Math.min(Math.max((long) fragments.buffer.capacity() << 1, size),
+                    config.getMaxMessageSize());
+            RefCountedBuffer expanded = new RefCountedBuffer(allocator, capacity);
+            fragments.buffer.flip();
+            expanded.buffer.put(fragments.buffer);
+            fragments.release();
+            fragments = expanded;
+        }
+        fragments.buffer.put(payload);
     }
 
     private WsPayload callInterceptRequest(WsPayload wsPayload) {
@@ -174,42 +1165,151 @@ public class WsContextImpl implements WsContext {
         return result;
     }
 
-    private FrameType parseFrame(byte code) {
-        // abcd message body：[-127, -124, 79, 43, -40, -15, 46, 73, -69, -107]
-        // data[0] & 0xFF => 129（Unsigned Byte）
-        // 129 & 0xF => 1（OpCode：最低四位）
-        return FrameType.parseFrame((code & 0xFF) & 0xF);
+    /**
+     * 发送 close 帧（1000），等待客户端回复 close 帧后关闭连接
+     */
+    @Override
+    public void close() {
+        close(CloseStatus.NORMAL, "");
     }
 
-    private long getPayloadLen(ByteBuffer data) {
-        // abcd message body：[-127, -124, 79, 43, -40, -15, 46, 73, -69, -107]
-        // data[1] & 0xFF => 132（Unsigned Byte）
-        // 132 ^ 128 => 4
-        int flag = (data.get() & 0xFF) ^ 128;
-        if (flag <= 125) {
-            return flag;
-        } else if (flag == 126) {
-            // convert to unsigned short
-            return data.getShort() & 0xFFFF;
-        } else if (flag == 127) {
-            return data.getLong();
+    @Override
+    public void close(int code, String reason) {
+        if (!CloseStatus.isValid(code)) {
+            throw new IllegalArgumentException("illegal close code: " + code);
+        }
+        if (!workerThread.inWorkerThread()) {
+            workerThread.execute(() -> close(code, reason));
+            return;
+        }
+        if (!socketChannel.isOpen() || closeSent) {
+            return;
+        }
+        if (!opened) {
+            // 握手还没有完成，直接关闭
+            closeChannel(CloseReason.SERVER_CLOSE);
+            return;
         }
 
-        return 0;
+        closeCode = code;
+        closeReasonText = reason == null ? "" : reason;
+        sendClose(code, closeReasonText);
+        if (!reading) {
+            flushOrClose();
+        }
     }
 
-    @Override
-    public void close() {
+    /**
+     * WorkerThread 停止时调用：尽量发送 close 帧（1001）后直接关闭连接
+     */
+    void shutdown() {
+        if (opened && !closeSent && socketChannel.isOpen()) {
+            closeCode = CloseStatus.GOING_AWAY;
+            sendClose(CloseStatus.GOING_AWAY, "");
+            try {
+                flush();
+            } catch (IOException e) {
+                // 连接即将关闭，忽略
+            }
+        }
+        closeChannel(CloseReason.SERVER_CLOSE);
+    }
+
+    /**
+     * 直接关闭 TCP 连接，已经回调过 onOpen 的连接回调一次 onClose
+     */
+    void closeChannel(CloseReason reason) {
+        if (!workerThread.inWorkerThread()) {
+            workerThread.execute(() -> closeChannel(reason));
+            return;
+        }
+        if (closeReason == null) {
+            closeReason = reason;
+        }
+
         try {
             if (socketChannel.isOpen()) {
                 this.socketChannel.close();
+                workerThread.getMetrics().recordClose(closeReason);
+                cancelTimers();
+                releaseBuffers();
                 this.workerThread.getWsCounter().decrementAndGet();
+                this.workerThread.getContexts().remove(this);
+                if (registry != null && opened) {
+                    registry.unregister(this);
+                }
+                if (opened && !closeNotified) {
+                    closeNotified = true;
+                    // 没有完成 close 握手时为 1006
+                    int code = closeCode;
+                    String reasonText = this.closeReasonText;
+                    dispatch(() -> wsCallback.onClose(this, code, reasonText));
+                }
+                for (Runnable listener : closeListeners) {
+                    listener.run();
+                }
             }
         } catch (IOException e) {
             e.printStackTrace();
         }
     }
 
+    private void cancelTimers() {
+        if (handshakeTimeout != null) {
+            handshakeTimeout.cancel();
+            handshakeTimeout = null;
+        }
+        if (idleTimeout != null) {
+            idleTimeout.cancel();
+            idleTimeout = null;
+        }
+        if (closeTimeout != null) {
+            closeTimeout.cancel();
+            closeTimeout = null;
+        }
+        if (rateLimitTimeout != null) {
+            rateLimitTimeout.cancel();
+            rateLimitTimeout = null;
+        }
+    }
+
+    private void releaseBuffers() {
+        OutboundFrame frame;
+        while ((frame = outbound.poll()) != null) {
+            frame.release(allocator);
+            fail(frame.promise);
+        }
+        while ((frame = control.poll()) != null) {
+            frame.release(allocator);
+        }
+        pendingBytes = 0;
+
+        if (fragments != null) {
+            fragments.release();
+            fragments = null;
+        }
+        releaseHandshakeBuffer();
+        if (deflate != null) {
+            deflate.close();
+        }
+
+        // 正在读取时由 handlerPayload 负责归还
+        if (readChunk != null && !reading) {
+            readChunk.release();
+            readChunk = null;
+        }
+    }
+
+    @Override
+    public void addCloseListener(Runnable listener) {
+        this.closeListeners.add(listener);
+    }
+
+    @Override
+    public void removeCloseListener(Runnable listener) {
+        this.closeListeners.remove(listener);
+    }
+
     @Override
     public WorkerThread getWorkerThread() {
         return this.workerThread;
@@ -0,0 +1,79 @@
+package com.easy.ws;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.channels.SelectableChannel;
+import java.nio.channels.SelectionKey;
+import java.util.List;
+
+/**
+ * 事件循环的 I/O 多路复用：注册连接、修改关注的事件、等待并分发就绪事件，由 {@link WsTransport} 创建。
+ * WorkerThread 和 AcceptorThread 只通过该接口等待事件，不直接使用 Selector / SelectionKey，
+ * 基于 JNI 的 epoll（包括边缘触发）、io_uring 等实现可以直接替换。
+ * 每个线程一个实例，除 {@link #wakeup()} 外只能在所属线程中调用。
+ * <p>
+ * 使用方在处理读事件时一直读到没有数据（read 返回 0），写事件时一直写到发送缓冲区满，
+ * 关注的事件从关闭变为开启时由实现保证之后还能收到就绪事件，因此边缘触发的实现也不会丢失事件
+ *
+ * @author Ray
+ * @date created in 2021/8/22 15:05
+ */
+public interface WsEventLoop extends Closeable {
+
+    int OP_READ = SelectionKey.OP_READ;
+    int OP_WRITE = SelectionKey.OP_WRITE;
+    int OP_ACCEPT = SelectionKey.OP_ACCEPT;
+
+    /**
+     * 就绪事件的回调，一次 poll 中每个就绪的连接回调一次
+     */
+    interface Handler {
+
+        void onReady(Registration registration, int readyOps);
+
+    }
+
+    /**
+     * 注册后返回的句柄，用于修改关注的事件
+     */
+    interface Registration {
+
+        Object attachment();
+
+        int interestOps();
+
+        void interestOps(int ops);
+
+        /**
+         * 连接关闭或者取消注册后为 false
+         */
+        boolean isValid();
+
+    }
+
+    /**
+     * 注册连接（SocketChannel 或者 ServerSocketChannel），channel 必须是非阻塞模式
+     */
+    Registration register(SelectableChannel channel, int interestOps, Object attachment) throws IOException;
+
+    /**
+     * 不阻塞，处理当前已经就绪的事件，返回回调的次数
+     */
+    int pollNow(Handler handler) throws IOException;
+
+    /**
+     * 等待并处理就绪的事件，最多等待 timeoutMillis 毫秒，0 表示一直等到有事件或者被 {@link #wakeup()} 唤醒
+     */
+    int poll(Handler handler, long timeoutMillis) throws IOException;
+
+    /**
+     * 唤醒阻塞在 poll 上的线程，可以在任意线程中调用
+     */
+    void wakeup();
+
+    /**
+     * 当前所有有效的注册，停止时用于关闭所有连接
+     */
+    List<Registration> registrations();
+
+}
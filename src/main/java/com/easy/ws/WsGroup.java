@@ -0,0 +1,77 @@
+package com.easy.ws;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+
+/**
+ * 连接分组（房间），连接关闭时自动移出分组
+ *
+ * @author Ray
+ * @date created in 2021/8/9 21:30
+ */
+public class WsGroup {
+
+    private final String name;
+    private final WsConfig config;
+    // 成员以及注册在成员上的关闭回调，移出分组时一起注销
+    private final Map<WsContext, Runnable> members = new ConcurrentHashMap<>();
+
+    public WsGroup(String name, WsConfig config) {
+        this.name = name;
+        this.config = config;
+    }
+
+    public String getName() {
+        return this.name;
+    }
+
+    /**
+     * 已经关闭的连接不会加入分组，返回 false
+     */
+    public boolean add(WsContext context) {
+        Runnable listener = () -> remove(context);
+        if (this.members.putIfAbsent(context, listener) != null) {
+            return false;
+        }
+        context.addCloseListener(listener);
+        // 关闭回调在关闭 SocketChannel 之后执行，注册之前已经关闭的连接不会再回调
+        if (!context.getSocketChannel().isOpen()) {
+            remove(context);
+            return false;
+        }
+        return true;
+    }
+
+    public boolean remove(WsContext context) {
+        Runnable listener = this.members.remove(context);
+        if (listener == null) {
+            return false;
+        }
+        context.removeCloseListener(listener);
+        return true;
+    }
+
+    public boolean contains(WsContext context) {
+        return this.members.containsKey(context);
+    }
+
+    public int size() {
+        return this.members.size();
+    }
+
+    public Set<WsContext> getMembers() {
+        return Collections.unmodifiableSet(this.members.keySet());
+    }
+
+    public BroadcastResult broadcast(WsPayload wsPayload) {
+        return broadcast(wsPayload, null);
+    }
+
+    public BroadcastResult broadcast(WsPayload wsPayload, Predicate<WsContext> filter) {
+        return Broadcaster.broadcast(this.members.keySet(), wsPayload, filter, this.config);
+    }
+
+}
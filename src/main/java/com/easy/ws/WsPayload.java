@@ -1,5 +1,7 @@
 package com.easy.ws;
 
+import java.nio.ByteBuffer;
+
 /**
  * @author Ray
  * @date created in 2021/8/1 23:41
@@ -14,4 +16,25 @@ public interface WsPayload {
         return getData().length;
     }
 
+    /**
+     * 消息体的只读视图，position 到 limit 之间为消息内容
+     */
+    default ByteBuffer getBuffer() {
+        return ByteBuffer.wrap(getData()).asReadOnlyBuffer();
+    }
+
+    /**
+     * 增加引用计数，在回调之外继续使用消息时调用
+     */
+    default WsPayload retain() {
+        return this;
+    }
+
+    /**
+     * 减少引用计数，归零时释放底层 buffer 并返回 true
+     */
+    default boolean release() {
+        return false;
+    }
+
 }
@@ -0,0 +1,31 @@
+package com.easy.ws;
+
+import java.io.IOException;
+
+/**
+ * 客户端违反 ws 协议，服务端发送带状态码的 close 帧后关闭连接
+ *
+ * @author Ray
+ * @date created in 2021/8/21 15:20
+ */
+public class WsProtocolException extends IOException {
+
+    private static final long serialVersionUID = 1L;
+
+    // CloseStatus 中的状态码
+    private final int closeCode;
+
+    public WsProtocolException(String message) {
+        this(CloseStatus.PROTOCOL_ERROR, message);
+    }
+
+    public WsProtocolException(int closeCode, String message) {
+        super(message);
+        this.closeCode = closeCode;
+    }
+
+    public int getCloseCode() {
+        return this.closeCode;
+    }
+
+}
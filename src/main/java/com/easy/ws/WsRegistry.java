@@ -0,0 +1,140 @@
+package com.easy.ws;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * 所有已完成握手的连接，按 id 查找为 O(1)。
+ * 通过 {@link #addIndex(AttributeKey)} 为属性建立二级索引（例如用户 id），
+ * 连接设置属性、关闭时自动维护索引，不需要在外部自己维护 Map。
+ * 所有方法都可以在任意线程调用，遍历是弱一致的，不会阻塞 WorkerThread
+ *
+ * @author Ray
+ * @date created in 2021/8/20 20:30
+ */
+public class WsRegistry {
+
+    private final Map<Long, WsContext> contexts = new ConcurrentHashMap<>();
+    // 属性 -> 属性值 -> 连接
+    private final Map<AttributeKey<?>, Map<Object, Set<WsContext>>> indexes = new ConcurrentHashMap<>();
+
+    /**
+     * 为属性建立索引，已经设置了该属性的连接会被加入索引
+     */
+    public void addIndex(AttributeKey<?> key) {
+        if (this.indexes.putIfAbsent(key, new ConcurrentHashMap<>()) != null) {
+            return;
+        }
+        for (WsContext context : this.contexts.values()) {
+            Object value = context.getAttribute(key);
+            if (value != null) {
+                index(context, key, value);
+            }
+        }
+    }
+
+    public WsContext get(long id) {
+        return this.contexts.get(id);
+    }
+
+    /**
+     * 属性值为 value 的所有连接，属性必须已经建立索引
+     */
+    public <T> Set<WsContext> find(AttributeKey<T> key, T value) {
+        Map<Object, Set<WsContext>> index = this.indexes.get(key);
+        if (index == null) {
+            throw new IllegalArgumentException(key + " is not indexed");
+        }
+        Set<WsContext> found = index.get(value);
+        return found == null ? Collections.emptySet() : Collections.unmodifiableSet(found);
+    }
+
+    public int size() {
+        return this.contexts.size();
+    }
+
+    /**
+     * 所有连接的只读视图，遍历期间新增或关闭的连接可能不可见
+     */
+    public Collection<WsContext> getContexts() {
+        return Collections.unmodifiableCollection(this.contexts.values());
+    }
+
+    public void forEach(Consumer<WsContext> action) {
+        this.contexts.values().forEach(action);
+    }
+
+    /**
+     * 拷贝当前所有连接
+     */
+    public List<WsContext> snapshot() {
+        return new ArrayList<>(this.contexts.values());
+    }
+
+    void register(WsContext context) {
+        this.contexts.put(context.getId(), context);
+        for (Map.Entry<AttributeKey<?>, Map<Object, Set<WsContext>>> entry : this.indexes.entrySet()) {
+            Object value = context.getAttribute(entry.getKey());
+            if (value != null) {
+                index(context, entry.getKey(), value);
+            }
+        }
+    }
+
+    void unregister(WsContext context) {
+        // 先移出连接，之后并发设置的属性不会再加入索引
+        if (this.contexts.remove(context.getId()) == null) {
+            return;
+        }
+        for (Map.Entry<AttributeKey<?>, Map<Object, Set<WsContext>>> entry : this.indexes.entrySet()) {
+            Object value = context.getAttribute(entry.getKey());
+            if (value != null) {
+                unindex(context, entry.getKey(), value);
+            }
+        }
+    }
+
+    /**
+     * 连接的属性发生变化，调用前属性已经更新
+     */
+    void onAttributeChanged(WsContext context, AttributeKey<?> key, Object oldValue, Object newValue) {
+        if (!this.indexes.containsKey(key)) {
+            return;
+        }
+        if (oldValue != null) {
+            unindex(context, key, oldValue);
+        }
+        if (newValue != null && this.contexts.containsKey(context.getId())) {
+            index(context, key, newValue);
+            // 与关闭连接并发时，关闭可能已经清理过索引
+            if (!this.contexts.containsKey(context.getId())) {
+                unindex(context, key, newValue);
+            }
+        }
+    }
+
+    private void index(WsContext context, AttributeKey<?> key, Object value) {
+        this.indexes.get(key).compute(value, (k, set) -> {
+            if (set == null) {
+                set = ConcurrentHashMap.newKeySet();
+            }
+            set.add(context);
+            return set;
+        });
+    }
+
+    private void unindex(WsContext context, AttributeKey<?> key, Object value) {
+        // 没有连接时移除属性值，避免索引越来越大
+        this.indexes.get(key).computeIfPresent(value, (k, set) -> {
+            set.remove(context);
+            return set.isEmpty() ? null : set;
+        });
+    }
+
+}
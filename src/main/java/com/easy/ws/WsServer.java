@@ -6,21 +6,16 @@ import org.slf4j.LoggerFactory;
 import java.io.IOException;
 import java.net.InetSocketAddress;
 import java.net.StandardSocketOptions;
-import java.nio.ByteBuffer;
-import java.nio.channels.SelectionKey;
-import java.nio.channels.Selector;
 import java.nio.channels.ServerSocketChannel;
 import java.nio.channels.SocketChannel;
-import java.nio.charset.StandardCharsets;
-import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
-import java.util.Base64;
-import java.util.Iterator;
 import java.util.List;
-import java.util.concurrent.atomic.AtomicInteger;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
 
 /**
  * Web Socket Server
@@ -30,18 +25,21 @@ import java.util.regex.Pattern;
  */
 public class WsServer {
 
-    public static final int WORKER_NUM = 10;
     private final Logger logger  = LoggerFactory.getLogger(WsServer.class);
 
-    private final WorkerThread[] worker = new WorkerThread[WORKER_NUM];
-    private final AtomicInteger count = new AtomicInteger();
+    private WorkerThread[] worker = new WorkerThread[0];
+    private AcceptorThread[] acceptors = new AcceptorThread[0];
     private final List<Plugin> wsPlugins = new ArrayList<>();
     private final List<ServerCustomer> serverCustomers = new ArrayList<>();
     private final List<ClientCustomer> clientCustomers = new ArrayList<>();
-    private boolean running = true;
+    private final Map<String, WsGroup> groups = new ConcurrentHashMap<>();
+    private final WsRegistry registry = new WsRegistry();
+    // 不使用 SO_REUSEPORT 时所有 AcceptorThread 共享
     private ServerSocketChannel serverSocketChannel;
-    private Selector selector;
+    private WsTransport transport;
     private WsCallback wsCallback;
+    private ScheduledExecutorService metricsExporter;
+    private final WsConfig config = new WsConfig();
     private final int port;
 
     public WsServer(int port) {
@@ -51,31 +49,55 @@ public class WsServer {
 
     public void initServer() {
         try {
-            selector = Selector.open();
-            serverSocketChannel = ServerSocketChannel.open();
-            serverSocketChannel.configureBlocking(false);
-
-            // call ServerCustomer
-            serverCustomers.forEach(serverCustomer -> serverCustomer.customer(serverSocketChannel));
-
-            // bind listener port
-            serverSocketChannel.socket().bind(new InetSocketAddress(port));
-            // register selector
-            serverSocketChannel.register(selector, SelectionKey.OP_ACCEPT);
-
-            for (int i = 0; i < WORKER_NUM; i++) {
-                WorkerThread workerThread = new WorkerThread();
+            transport = WsTransports.get(config.getTransport());
+            worker = new WorkerThread[config.getWorkerNum()];
+            long now = System.nanoTime();
+            TokenBucket messageLimiter = config.getGlobalMaxMessagesPerSecond() > 0
+                    ? new TokenBucket(config.getGlobalMaxMessagesPerSecond(), now) : null;
+            TokenBucket byteLimiter = config.getGlobalMaxBytesPerSecond() > 0
+                    ? new TokenBucket(config.getGlobalMaxBytesPerSecond(), now) : null;
+            for (int i = 0; i < worker.length; i++) {
+                WorkerThread workerThread = new WorkerThread(transport);
                 worker[i] = workerThread;
                 workerThread.setWsCallback(wsCallback);
                 workerThread.setPlugin(wsPlugins);
+                workerThread.setConfig(config);
+                workerThread.setGlobalRateLimiter(messageLimiter, byteLimiter);
+                workerThread.setRegistry(registry);
                 workerThread.start();
             }
 
+            acceptors = new AcceptorThread[config.getAcceptorNum()];
+            boolean reusePort = acceptors.length > 1 && config.isReusePort() && transport.isReusePortSupported();
+            if (!reusePort) {
+                serverSocketChannel = openServerSocketChannel(false);
+            }
+            for (int i = 0; i < acceptors.length; i++) {
+                // SO_REUSEPORT：每个 AcceptorThread 绑定同一个端口，由内核均衡分配连接
+                acceptors[i] = reusePort ? new AcceptorThread(this, transport, openServerSocketChannel(true), true)
+                        : new AcceptorThread(this, transport, serverSocketChannel, false);
+            }
+
         } catch (IOException e) {
             e.printStackTrace();
         }
     }
 
+    private ServerSocketChannel openServerSocketChannel(boolean reusePort) throws IOException {
+        ServerSocketChannel ssc = transport.openServerSocketChannel();
+        ssc.configureBlocking(false);
+        if (reusePort) {
+            ssc.setOption(StandardSocketOptions.SO_REUSEPORT, Boolean.TRUE);
+        }
+
+        // call ServerCustomer
+        serverCustomers.forEach(serverCustomer -> serverCustomer.customer(ssc));
+
+        // bind listener port
+        ssc.bind(new InetSocketAddress(port), config.getBacklog());
+        return ssc;
+    }
+
     public void addPlugin(Plugin plugin) {
         this.wsPlugins.add(plugin);
     }
@@ -89,107 +111,171 @@ public class WsServer {
     }
 
     private void registerSocketChannel(SocketChannel socketChannel) {
-        this.worker[count.getAndIncrement() % WORKER_NUM].register(socketChannel);
+        this.config.getWorkerChooser().choose(worker).register(socketChannel);
     }
 
     public void close() {
-        this.running = false;
+        if (metricsExporter != null) {
+            metricsExporter.shutdown();
+        }
         try {
-            for (int i = 0; i < WORKER_NUM; i++) {
-                worker[i].close();
+            for (AcceptorThread acceptor : acceptors) {
+                if (acceptor != null) {
+                    acceptor.close();
+                }
+            }
+            for (WorkerThread workerThread : worker) {
+                workerThread.close();
+            }
+            if (serverSocketChannel != null) {
+                serverSocketChannel.close();
             }
-            serverSocketChannel.close();
         } catch (IOException e) {
             e.printStackTrace();
         }
     }
 
+    /**
+     * 启动服务，阻塞到所有 AcceptorThread 退出
+     */
     public void start() throws IOException {
 
-        // init ServerSocketChannel、WorkerThread
+        // init ServerSocketChannel、WorkerThread、AcceptorThread
         initServer();
 
-        logger.info("start webSocket service success");
-
-        while (running) {
-            selector.select();
-            Iterator<SelectionKey> iterator = selector.selectedKeys().iterator();
+        for (AcceptorThread acceptor : acceptors) {
+            if (acceptor == null) {
+                throw new IOException("start webSocket service failed, port: " + port);
+            }
+        }
+        for (AcceptorThread acceptor : acceptors) {
+            acceptor.start();
+        }
 
-            while (iterator.hasNext()) {
-                SelectionKey selectionKey = iterator.next();
-                iterator.remove();
+        logger.info("start webSocket service success, transport: {}, acceptors: {}, workers: {}", transport,
+                acceptors.length, worker.length);
 
-                if (!selectionKey.isValid()) {
-                    continue;
-                }
+        startMetricsExporter();
 
-                if (selectionKey.isAcceptable()) {
-                    // accept connection from client
-                    ServerSocketChannel ssc = (ServerSocketChannel) selectionKey.channel();
-                    SocketChannel socketChannel = ssc.accept();
-                    socketChannel.configureBlocking(false);
-                    socketChannel.setOption(StandardSocketOptions.SO_KEEPALIVE, Boolean.TRUE);
+        try {
+            for (AcceptorThread acceptor : acceptors) {
+                acceptor.join();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
 
-                    clientCustomers.forEach(clientCustomer -> clientCustomer.customer(socketChannel));
+    private void startMetricsExporter() {
+        MetricsExporter exporter = config.getMetricsExporter();
+        if (exporter == null) {
+            return;
+        }
 
-                    // handler ws handshake packet
-                    if (handlerHandshake(socketChannel)) {
-                        registerSocketChannel(socketChannel);
-                    }
-                }
+        metricsExporter = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "metrics-exporter");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long interval = config.getMetricsExportIntervalMillis();
+        metricsExporter.scheduleAtFixedRate(() -> {
+            try {
+                List<MetricsSnapshot> workers = getWorkerMetrics();
+                exporter.export(MetricsSnapshot.merge(workers), workers);
+            } catch (RuntimeException e) {
+                logger.error("export metrics failed", e);
             }
+        }, interval, interval, TimeUnit.MILLISECONDS);
+    }
 
-        }
+    /**
+     * 所有 WorkerThread 的统计汇总
+     */
+    public MetricsSnapshot getMetrics() {
+        return MetricsSnapshot.merge(getWorkerMetrics());
     }
 
-    private boolean handlerHandshake(SocketChannel socketChannel) {
-        ByteBuffer data = ByteBuffer.allocate(1024);
-        Pattern pattern = Pattern.compile("Sec-WebSocket-Key: (.*)");
+    /**
+     * 每个 WorkerThread 的统计
+     */
+    public List<MetricsSnapshot> getWorkerMetrics() {
+        List<MetricsSnapshot> snapshots = new ArrayList<>(worker.length);
+        for (WorkerThread workerThread : worker) {
+            if (workerThread != null) {
+                snapshots.add(workerThread.getMetrics().snapshot());
+            }
+        }
+        return snapshots;
+    }
 
+    /**
+     * AcceptorThread 接收到新连接
+     */
+    void onAccept(SocketChannel socketChannel) {
         try {
-            socketChannel.read(data);
-            // obtain Sec-WebSocket-Key value from request header
-            Matcher matcher = pattern.matcher(new String(data.array(), StandardCharsets.UTF_8));
-            if (matcher.find()) {
-                String key = matcher.group(1).trim();
-                // https://blog.51cto.com/shuxiayeshou/1762152
-                // https://blog.csdn.net/weixin_34080951/article/details/91915908
-                String response = "HTTP/1.1 101 Switching Protocols\r\nUpgrade: "
-                        + "websocket\r\nConnection: Upgrade\r\nSec-WebSocket-Accept: "
-                        + getSecWebSocketAccept(key) + "\r\n\r\n";
-                // write handshake packet
-                socketChannel.write(ByteBuffer.wrap(response.getBytes(StandardCharsets.UTF_8)));
-            } else {
-                logger.warn(socketChannel.getRemoteAddress() + " not found ws handshake");
-            }
-        } catch (IOException | NoSuchAlgorithmException e) {
+            socketChannel.configureBlocking(false);
+            socketChannel.setOption(StandardSocketOptions.SO_KEEPALIVE, Boolean.TRUE);
+
+            clientCustomers.forEach(clientCustomer -> clientCustomer.customer(socketChannel));
+
+            // ws 握手交给 WorkerThread 处理，不阻塞接收连接
+            registerSocketChannel(socketChannel);
+        } catch (IOException e) {
+            logger.warn("accept {} failed: {}", socketChannel, e.getMessage());
             try {
                 socketChannel.close();
             } catch (IOException ioException) {
                 ioException.printStackTrace();
             }
-            return false;
-        } finally {
-            data.clear();
         }
+    }
+
+    public void setWsCallback(WsCallback wsCallback) {
+        this.wsCallback = wsCallback;
+    }
 
-        return true;
+    public BroadcastResult broadcast(WsPayload wsPayload) {
+        return broadcast(wsPayload, null);
     }
 
+    /**
+     * 向所有满足 filter 的连接广播消息，消息只编码一次
+     */
+    public BroadcastResult broadcast(WsPayload wsPayload, Predicate<WsContext> filter) {
+        return Broadcaster.broadcast(registry.getContexts(), wsPayload, filter, config);
+    }
 
-    // 服务端先获取 Sec-WebSocket-Key 请求头的值，之后在该值后加上 GUID
-    // 然后对该字符串进行 SHA1 加密，得到一个 byte 数组，最终将 byte 数组进行base64加密即可
-    private String getSecWebSocketAccept(String key) throws NoSuchAlgorithmException {
-        String guid = "258EAFA5-E914-47DA-95CA-C5AB0DC85B11";
-        key += guid;
-        MessageDigest md = MessageDigest.getInstance("SHA-1");
-        md.update(key.getBytes(StandardCharsets.UTF_8), 0, key.length());
-        byte[] shaHash = md.digest();
-        return Base64.getEncoder().encodeToString(shaHash);
+    /**
+     * 按当前配置（分片大小、permessage-deflate）预先编码消息，用于反复发送的相同消息
+     */
+    public PreparedWsPayload prepare(WsPayload wsPayload) {
+        return new PreparedWsPayload(wsPayload, config.getFragmentSize(), config.getPerMessageDeflate());
     }
 
-    public void setWsCallback(WsCallback wsCallback) {
-        this.wsCallback = wsCallback;
+    /**
+     * 所有已完成握手的连接，可以按 id 或者建立了索引的属性查找
+     */
+    public WsRegistry getRegistry() {
+        return this.registry;
+    }
+
+    public WsGroup getGroup(String name) {
+        return this.groups.computeIfAbsent(name, key -> new WsGroup(key, config));
+    }
+
+    public WsGroup removeGroup(String name) {
+        return this.groups.remove(name);
+    }
+
+    /**
+     * 启动后使用的传输层，启动前为 null
+     */
+    public WsTransport getTransport() {
+        return this.transport;
+    }
+
+    public WsConfig getConfig() {
+        return this.config;
     }
 
 }
@@ -23,14 +23,16 @@ public class WsServerExample {
 
             @Override
             public WsPayload onMessage(WsContext context, WsPayload wsPayload) {
-                System.out.println("接收到 " + context.getRemoteAddress() + " 消息：" + new String(wsPayload.getData(),
-                        StandardCharsets.UTF_8));
+                // 文本消息已经校验过 UTF-8，getText() 解码一次后缓存
+                String message = wsPayload instanceof TextWsPayload ? ((TextWsPayload) wsPayload).getText()
+                        : new String(wsPayload.getData(), StandardCharsets.UTF_8);
+                System.out.println("接收到 " + context.getRemoteAddress() + " 消息：" + message);
                 if (wsPayload.getDataLength() > 2) {
                     // send binary data
                     return new DefaultWsPayload(FrameType.BINARY, "hello world".getBytes(StandardCharsets.UTF_8));
                 } else {
                     // send text data
-                    return new DefaultWsPayload(FrameType.TEXT, "hello".getBytes(StandardCharsets.UTF_8));
+                    return new TextWsPayload("hello");
                 }
             }
 
@@ -0,0 +1,49 @@
+package com.easy.ws;
+
+import java.io.IOException;
+import java.net.StandardSocketOptions;
+import java.nio.channels.ServerSocketChannel;
+
+/**
+ * 传输层：提供 WorkerThread、AcceptorThread 使用的事件循环（{@link WsEventLoop}）和监听的 ServerSocketChannel，
+ * 事件循环必须能注册该实现创建的 channel。默认使用 {@link NioTransport}；其它实现（例如基于 JNI 的 epoll / io_uring）通过 ServiceLoader
+ * 在 META-INF/services/com.easy.ws.WsTransport 中注册，启动时由 {@link WsTransports} 选择
+ *
+ * @author Ray
+ * @date created in 2021/8/22 15:10
+ */
+public interface WsTransport {
+
+    /**
+     * 唯一的名称，用于 {@link WsConfig#setTransport(String)} 指定
+     */
+    String getName();
+
+    /**
+     * 当前平台是否可用，例如 native 实现需要检查操作系统和内核版本
+     */
+    boolean isAvailable();
+
+    /**
+     * 没有指定名称时选择可用的、优先级最高的实现，NioTransport 为 0
+     */
+    default int getPriority() {
+        return 0;
+    }
+
+    /**
+     * 每个 WorkerThread、AcceptorThread 各创建一个
+     */
+    WsEventLoop openEventLoop() throws IOException;
+
+    ServerSocketChannel openServerSocketChannel() throws IOException;
+
+    default boolean isReusePortSupported() {
+        try (ServerSocketChannel ssc = openServerSocketChannel()) {
+            return ssc.supportedOptions().contains(StandardSocketOptions.SO_REUSEPORT);
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+}
@@ -0,0 +1,64 @@
+package com.easy.ws;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
+
+/**
+ * 通过 ServiceLoader 加载 WsTransport，没有其它可用实现时回退到 {@link NioTransport}
+ *
+ * @author Ray
+ * @date created in 2021/8/22 15:30
+ */
+public class WsTransports {
+
+    private static final Logger logger = LoggerFactory.getLogger(WsTransports.class);
+
+    private WsTransports() {
+    }
+
+    /**
+     * 当前平台所有可用的实现，按优先级从高到低排序，至少包含 NioTransport
+     */
+    public static List<WsTransport> available() {
+        List<WsTransport> transports = new ArrayList<>();
+        boolean nio = false;
+        try {
+            for (WsTransport transport : ServiceLoader.load(WsTransport.class)) {
+                if (transport.isAvailable()) {
+                    transports.add(transport);
+                    nio |= NioTransport.NAME.equals(transport.getName());
+                }
+            }
+        } catch (ServiceConfigurationError e) {
+            logger.warn("load transport failed: {}", e.getMessage());
+        }
+        if (!nio) {
+            transports.add(new NioTransport());
+        }
+        transports.sort(Comparator.comparingInt(WsTransport::getPriority).reversed());
+        return transports;
+    }
+
+    /**
+     * name 为 null 时返回优先级最高的实现，指定的实现不存在或者不可用时抛出 IllegalArgumentException
+     */
+    public static WsTransport get(String name) {
+        List<WsTransport> transports = available();
+        if (name == null) {
+            return transports.get(0);
+        }
+        for (WsTransport transport : transports) {
+            if (transport.getName().equals(name)) {
+                return transport;
+            }
+        }
+        throw new IllegalArgumentException("transport not available: " + name);
+    }
+
+}
@@ -0,0 +1,206 @@
+package com.easy.ws;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author Ray
+ * @date created in 2021/8/5 22:30
+ */
+class FrameDecoderTest {
+
+    private static final int KEY = 0x37FA213D;
+
+    private final FrameDecoder decoder = new FrameDecoder(1 << 20);
+    private final List<Frame> frames = new ArrayList<>();
+
+    @Test
+    void decodeSingleFrame() throws IOException {
+        ByteBuffer in = ByteBuffer.wrap(frame(true, 0, FrameType.BINARY, bytes(10)));
+        decoder.decode(in, this::onFrame);
+
+        assertEquals(1, frames.size());
+        assertTrue(frames.get(0).fin);
+        assertEquals(FrameType.BINARY, frames.get(0).frameType);
+        assertArrayEquals(bytes(10), frames.get(0).payload);
+        assertFalse(in.hasRemaining());
+    }
+
+    @Test
+    void decodeByteByByte() throws IOException {
+        // 覆盖 16 位和 64 位扩展长度，每次只多读到一个字节
+        byte[] data = concat(frame(true, 0, FrameType.BINARY, bytes(300)),
+                frame(true, 0, FrameType.BINARY, bytes(70000)));
+        ByteBuffer in = ByteBuffer.allocate(data.length);
+        for (byte b : data) {
+            in.put(b).flip();
+            decoder.decode(in, this::onFrame);
+            in.compact();
+        }
+
+        assertEquals(2, frames.size());
+        assertArrayEquals(bytes(300), frames.get(0).payload);
+        assertArrayEquals(bytes(70000), frames.get(1).payload);
+        assertEquals(0, in.position());
+    }
+
+    @Test
+    void decodeCoalescedFramesAndKeepPartialTail() throws IOException {
+        byte[] next = frame(true, 0, FrameType.TEXT, "tail".getBytes(StandardCharsets.UTF_8));
+        byte[] data = concat(frame(true, 0, FrameType.TEXT, "a".getBytes(StandardCharsets.UTF_8)),
+                frame(true, 0, FrameType.PING, bytes(5)),
+                frame(true, 0, FrameType.BINARY, bytes(126)),
+                Arrays.copyOf(next, 3));
+        ByteBuffer in = ByteBuffer.wrap(data);
+        decoder.decode(in, this::onFrame);
+
+        assertEquals(3, frames.size());
+        assertEquals(FrameType.PING, frames.get(1).frameType);
+        assertArrayEquals(bytes(126), frames.get(2).payload);
+        // 已经解析完帧头，不完整的 masking key 留在 buffer 中
+        assertEquals(1, in.remaining());
+        assertEquals(0, decoder.getRequiredCapacity());
+
+        ByteBuffer rest = ByteBuffer.wrap(concat(Arrays.copyOfRange(data, data.length - 1, data.length),
+                Arrays.copyOfRange(next, 3, next.length)));
+        decoder.decode(rest, this::onFrame);
+        assertEquals(4, frames.size());
+        assertEquals("tail", new String(frames.get(3).payload, StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void decodeFragmentsWithInterleavedControlFrame() throws IOException {
+        byte[] data = concat(frame(false, 0, FrameType.BINARY, bytes(4)),
+                frame(true, 0, FrameType.PING, new byte[0]),
+                frame(false, 0, FrameType.CONTINUATION, bytes(4)),
+                frame(true, 0, FrameType.CONTINUATION, bytes(2)));
+        decoder.decode(ByteBuffer.wrap(data), this::onFrame);
+
+        assertEquals(4, frames.size());
+        assertFalse(frames.get(0).fin);
+        assertEquals(FrameType.PING, frames.get(1).frameType);
+        assertEquals(FrameType.CONTINUATION, frames.get(2).frameType);
+        assertFalse(frames.get(2).fin);
+        assertTrue(frames.get(3).fin);
+    }
+
+    @Test
+    void keepRsvBits() throws IOException {
+        decoder.decode(ByteBuffer.wrap(frame(true, PerMessageDeflate.RSV1, FrameType.BINARY, bytes(3))),
+                this::onFrame);
+        assertEquals(PerMessageDeflate.RSV1, frames.get(0).rsv);
+    }
+
+    @Test
+    void requiredCapacityWaitsForWholePayload() throws IOException {
+        byte[] data = frame(true, 0, FrameType.BINARY, bytes(1000));
+        ByteBuffer in = ByteBuffer.wrap(data, 0, 100);
+        decoder.decode(in, this::onFrame);
+
+        assertEquals(0, frames.size());
+        assertEquals(1000, decoder.getRequiredCapacity());
+    }
+
+    @Test
+    void rejectUnmaskedFrame() {
+        byte[] data = {(byte) 0x82, 0x01, 0x00};
+        WsProtocolException e = assertThrows(WsProtocolException.class,
+                () -> decoder.decode(ByteBuffer.wrap(data), this::onFrame));
+        assertEquals(CloseStatus.PROTOCOL_ERROR, e.getCloseCode());
+    }
+
+    @Test
+    void rejectFragmentedOrLargeControlFrame() {
+        assertThrows(WsProtocolException.class, () -> new FrameDecoder(1024)
+                .decode(ByteBuffer.wrap(frame(false, 0, FrameType.PING, bytes(1))), this::onFrame));
+        assertThrows(WsProtocolException.class, () -> new FrameDecoder(1024)
+                .decode(ByteBuffer.wrap(frame(true, 0, FrameType.PONG, bytes(126))), this::onFrame));
+    }
+
+    @Test
+    void rejectTooLargeFrame() {
+        FrameDecoder small = new FrameDecoder(100);
+        WsProtocolException e = assertThrows(WsProtocolException.class,
+                () -> small.decode(ByteBuffer.wrap(frame(true, 0, FrameType.BINARY, bytes(200))), this::onFrame));
+        assertEquals(CloseStatus.MESSAGE_TOO_BIG, e.getCloseCode());
+    }
+
+    private void onFrame(boolean fin, int rsv, FrameType frameType, ByteBuffer payload) {
+        byte[] bytes = new byte[payload.remaining()];
+        payload.get(bytes);
+        frames.add(new Frame(fin, rsv, frameType, bytes));
+    }
+
+    /**
+     * 客户端发送的带掩码的帧
+     */
+    static byte[] frame(boolean fin, int rsv, FrameType frameType, byte[] payload) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write((fin ? 0x80 : 0) | rsv << 4 | frameType.getOpCode());
+        if (payload.length < 126) {
+            out.write(0x80 | payload.length);
+        } else if (payload.length <= 0xFFFF) {
+            out.write(0x80 | 126);
+            out.write(payload.length >>> 8);
+            out.write(payload.length);
+        } else {
+            out.write(0x80 | 127);
+            for (int i = 7; i >= 0; i--) {
+                out.write((int) ((long) payload.length >>> (i << 3)));
+            }
+        }
+        for (int i = 3; i >= 0; i--) {
+            out.write(KEY >>> (i << 3));
+        }
+        for (int i = 0; i < payload.length; i++) {
+            out.write(payload[i] ^ (KEY >>> ((3 - (i & 0x3)) << 3)));
+        }
+        return out.toByteArray();
+    }
+
+    static byte[] bytes(int length) {
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++) {
+            bytes[i] = (byte) (i * 31 + 7);
+        }
+        return bytes;
+    }
+
+    static byte[] concat(byte[]... arrays) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (byte[] array : arrays) {
+            out.write(array, 0, array.length);
+        }
+        return out.toByteArray();
+    }
+
+    private static class Frame {
+
+        final boolean fin;
+        final int rsv;
+        final FrameType frameType;
+        final byte[] payload;
+
+        Frame(boolean fin, int rsv, FrameType frameType, byte[] payload) {
+            this.fin = fin;
+            this.rsv = rsv;
+            this.frameType = frameType;
+            this.payload = payload;
+        }
+
+    }
+
+}
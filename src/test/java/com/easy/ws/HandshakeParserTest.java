@@ -0,0 +1,90 @@
+package com.easy.ws;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author Ray
+ * @date created in 2021/8/11 21:40
+ */
+class HandshakeParserTest {
+
+    private static final String REQUEST = "GET /chat HTTP/1.1\r\n"
+            + "Host: server.example.com\r\n"
+            + "Upgrade: websocket\r\n"
+            + "Connection: keep-alive, Upgrade\r\n"
+            + "Sec-WebSocket-Key: dGhlIHNhbXBsZSBub25jZQ==\r\n"
+            + "Sec-WebSocket-Version: 13\r\n"
+            + "Sec-WebSocket-Extensions: permessage-deflate\r\n"
+            + "sec-websocket-extensions:  x-test  \r\n"
+            + "\r\n";
+
+    @Test
+    void secWebSocketAccept() {
+        // RFC 6455 1.3 中的例子
+        assertEquals("s3pPLMBiTxaQ9kYGzzhZRbK+xOo=", HandshakeParser.getSecWebSocketAccept("dGhlIHNhbXBsZSBub25jZQ=="));
+    }
+
+    @Test
+    void parseWholeRequestAndKeepFollowingBytes() throws HandshakeException {
+        ByteBuffer buffer = ascii(REQUEST + "\u0081");
+        HandshakeParser parser = new HandshakeParser();
+
+        assertTrue(parser.parse(buffer));
+        assertEquals("dGhlIHNhbXBsZSBub25jZQ==", parser.getKey());
+        assertEquals("permessage-deflate, x-test", parser.getExtensions());
+        // 请求头之后的数据（第一帧）留在 buffer 中
+        assertEquals(1, buffer.remaining());
+        assertTrue(parser.response().contains("Sec-WebSocket-Accept: s3pPLMBiTxaQ9kYGzzhZRbK+xOo=\r\n"));
+    }
+
+    @Test
+    void parseRequestArrivingInPieces() throws HandshakeException {
+        HandshakeParser parser = new HandshakeParser();
+        byte[] bytes = REQUEST.getBytes(StandardCharsets.US_ASCII);
+        ByteBuffer buffer = ByteBuffer.allocate(bytes.length);
+        for (int i = 0; i < bytes.length - 1; i++) {
+            buffer.put(bytes[i]).flip();
+            assertFalse(parser.parse(buffer));
+            assertEquals(0, buffer.position());
+            buffer.position(buffer.limit()).limit(buffer.capacity());
+        }
+        buffer.put(bytes[bytes.length - 1]).flip();
+        assertTrue(parser.parse(buffer));
+        assertFalse(buffer.hasRemaining());
+    }
+
+    @Test
+    void rejectInvalidRequests() {
+        assertStatus(400, REQUEST.replace("GET", "POST"));
+        assertStatus(400, REQUEST.replace("Upgrade: websocket\r\n", ""));
+        assertStatus(400, REQUEST.replace("keep-alive, Upgrade", "keep-alive"));
+        assertStatus(400, REQUEST.replace("Sec-WebSocket-Key: dGhlIHNhbXBsZSBub25jZQ==\r\n", ""));
+        assertStatus(426, REQUEST.replace("Version: 13", "Version: 8"));
+    }
+
+    @Test
+    void errorResponse() {
+        String response = HandshakeParser.errorResponse(new HandshakeException(426, "version"));
+        assertTrue(response.startsWith("HTTP/1.1 426 Upgrade Required\r\nSec-WebSocket-Version: 13\r\n"));
+        assertTrue(response.endsWith("\r\n\r\n"));
+    }
+
+    private static void assertStatus(int status, String request) {
+        HandshakeException e = assertThrows(HandshakeException.class,
+                () -> new HandshakeParser().parse(ascii(request)));
+        assertEquals(status, e.getStatus());
+    }
+
+    private static ByteBuffer ascii(String s) {
+        return ByteBuffer.wrap(s.getBytes(StandardCharsets.ISO_8859_1));
+    }
+
+}
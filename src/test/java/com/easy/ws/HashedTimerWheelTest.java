@@ -0,0 +1,119 @@
+package com.easy.ws;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author Ray
+ * @date created in 2021/8/15 17:30
+ */
+class HashedTimerWheelTest {
+
+    private static final long TICK = 10;
+    // 从一个较大的时间开始，nanoTime 可能是任意值
+    private static final long START = 1_000_000_000L;
+
+    private final HashedTimerWheel wheel = new HashedTimerWheel(TICK, 8, START);
+    private final List<String> fired = new ArrayList<>();
+
+    @Test
+    void expireAtDeadline() {
+        HashedTimerWheel.Timeout timeout = wheel.schedule(() -> fired.add("a"), 35, START);
+
+        wheel.expire(START + 39);
+        assertTrue(fired.isEmpty());
+        assertFalse(timeout.isExpired());
+
+        // 向上取整到 tick
+        wheel.expire(START + 40);
+        assertEquals(List.of("a"), fired);
+        assertTrue(timeout.isExpired());
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    void expireAfterMultipleRounds() {
+        // 8 个格子，25 个 tick 需要转 3 圈
+        wheel.schedule(() -> fired.add("far"), 25 * TICK, START);
+        wheel.schedule(() -> fired.add("near"), TICK, START);
+
+        wheel.expire(START + 24 * TICK);
+        assertEquals(List.of("near"), fired);
+        wheel.expire(START + 25 * TICK);
+        assertEquals(List.of("near", "far"), fired);
+    }
+
+    @Test
+    void expireLateCatchesUpAllTicks() {
+        for (int i = 1; i <= 20; i++) {
+            String name = String.valueOf(i);
+            wheel.schedule(() -> fired.add(name), i * TICK, START);
+        }
+        wheel.expire(START + 100 * TICK);
+        assertEquals(20, fired.size());
+        assertEquals("1", fired.get(0));
+        assertEquals("20", fired.get(19));
+    }
+
+    @Test
+    void cancelledTimeoutDoesNotRun() {
+        HashedTimerWheel.Timeout timeout = wheel.schedule(() -> fired.add("a"), TICK, START);
+        timeout.cancel();
+        assertTrue(timeout.isCancelled());
+
+        wheel.expire(START + 10 * TICK);
+        assertTrue(fired.isEmpty());
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    void timeoutScheduledByTaskRunsInLaterTick() {
+        wheel.schedule(() -> {
+            fired.add("first");
+            // 任务中添加的定时任务不会在本轮执行
+            wheel.schedule(() -> fired.add("second"), 0, START + TICK);
+        }, TICK, START);
+
+        wheel.expire(START + TICK);
+        assertEquals(List.of("first"), fired);
+        wheel.expire(START + 2 * TICK);
+        assertEquals(List.of("first", "second"), fired);
+    }
+
+    @Test
+    void failedTaskDoesNotStopOthers() {
+        wheel.schedule(() -> {
+            throw new IllegalStateException("expected");
+        }, TICK, START);
+        wheel.schedule(() -> fired.add("b"), TICK, START);
+
+        wheel.expire(START + TICK);
+        assertEquals(List.of("b"), fired);
+    }
+
+    @Test
+    void nanosUntilNextTick() {
+        assertEquals(-1, wheel.nanosUntilNextTick(START));
+
+        wheel.schedule(() -> fired.add("a"), 5 * TICK, START);
+        assertEquals(0, wheel.nanosUntilNextTick(START));
+        wheel.expire(START + 3);
+        assertEquals(TICK - 3, wheel.nanosUntilNextTick(START + 3));
+        // 已经过了下一个 tick
+        assertEquals(0, wheel.nanosUntilNextTick(START + 3 * TICK));
+    }
+
+    @Test
+    void rejectInvalidArguments() {
+        assertThrows(IllegalArgumentException.class, () -> new HashedTimerWheel(0, 8, START));
+        assertThrows(IllegalArgumentException.class, () -> new HashedTimerWheel(TICK, 0, START));
+    }
+
+}
@@ -0,0 +1,72 @@
+package com.easy.ws;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author Ray
+ * @date created in 2021/8/18 21:20
+ */
+class LatencyHistogramTest {
+
+    @Test
+    void bucketsCoverAllValues() {
+        long[] values = {0, 1, 7, 8, 9, 15, 16, 100, 1023, 1024, 123_456_789L, Long.MAX_VALUE};
+        for (long value : values) {
+            int index = LatencyHistogram.indexOf(value);
+            assertTrue(LatencyHistogram.lowerBound(index) <= value, "value " + value);
+            if (value < Long.MAX_VALUE && LatencyHistogram.lowerBound(index + 1) > 0) {
+                assertTrue(value < LatencyHistogram.lowerBound(index + 1), "value " + value);
+            }
+        }
+        // 桶的下界单调递增
+        for (int i = 1; i < LatencyHistogram.indexOf(Long.MAX_VALUE); i++) {
+            assertTrue(LatencyHistogram.lowerBound(i) > LatencyHistogram.lowerBound(i - 1));
+        }
+    }
+
+    @Test
+    void percentileWithinRelativeError() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 10_000; i++) {
+            histogram.record(i * 1000L);
+        }
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+
+        assertEquals(10_000, snapshot.getCount());
+        assertEquals(10_000_000, snapshot.getMax());
+        assertEquals(5_000_500, snapshot.getMean(), 0.001);
+        assertNear(5_000_000, snapshot.getValueAtPercentile(50));
+        assertNear(9_900_000, snapshot.getValueAtPercentile(99));
+        assertEquals(10_000_000, snapshot.getValueAtPercentile(100));
+    }
+
+    @Test
+    void negativeValueRecordedAsZero() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(-5);
+        assertEquals(0, histogram.snapshot().getValueAtPercentile(50));
+        assertEquals(0, LatencyHistogram.Snapshot.EMPTY.getValueAtPercentile(99));
+    }
+
+    @Test
+    void mergeSnapshots() {
+        LatencyHistogram a = new LatencyHistogram();
+        LatencyHistogram b = new LatencyHistogram();
+        a.record(100);
+        b.record(300);
+        b.record(500);
+
+        LatencyHistogram.Snapshot merged = a.snapshot().merge(b.snapshot());
+        assertEquals(3, merged.getCount());
+        assertEquals(500, merged.getMax());
+        assertEquals(300, merged.getMean(), 0.001);
+    }
+
+    private static void assertNear(long expected, long actual) {
+        assertTrue(Math.abs(actual - expected) <= expected / 8, "expected ~" + expected + " but was " + actual);
+    }
+
+}
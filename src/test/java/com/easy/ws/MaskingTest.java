@@ -0,0 +1,95 @@
+package com.easy.ws;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author Ray
+ * @date created in 2021/8/20 21:00
+ */
+class MaskingTest {
+
+    private static final byte[] KEY = {(byte) 0x9A, 0x12, (byte) 0xF0, 0x3C};
+
+    @Test
+    void maskMatchesBytewiseDefinition() {
+        int key = Masking.key(KEY);
+        byte[] data = FrameDecoderTest.bytes(64);
+        // 覆盖不同的起始偏移、长度，堆内存 / 直接内存以及两种字节序
+        for (ByteOrder order : new ByteOrder[]{ByteOrder.BIG_ENDIAN, ByteOrder.LITTLE_ENDIAN}) {
+            for (boolean direct : new boolean[]{false, true}) {
+                for (int start = 0; start < 8; start++) {
+                    for (int length = 0; length <= 40; length++) {
+                        ByteBuffer buffer = buffer(data, direct).order(order);
+                        Masking.mask(buffer, start, start + length, key);
+
+                        byte[] expected = data.clone();
+                        for (int i = 0; i < length; i++) {
+                            expected[start + i] ^= KEY[i & 0x3];
+                        }
+                        assertArrayEquals(expected, bytes(buffer), order + " " + direct + " " + start + " " + length);
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    void maskTwiceRestoresPayload() {
+        byte[] data = FrameDecoderTest.bytes(1000);
+        ByteBuffer buffer = buffer(data, true);
+        Masking.mask(buffer, 3, 997, Masking.key(KEY));
+        Masking.mask(buffer, 3, 997, Masking.key(KEY));
+        assertArrayEquals(data, bytes(buffer));
+    }
+
+    @Test
+    void unmaskUtf8MatchesMask() {
+        byte[] text = "ascii prefix \u4e2d\u6587 emoji \uD83D\uDE00 and a long ascii tail ...................."
+                .getBytes(StandardCharsets.UTF_8);
+        int key = Masking.key(KEY);
+        for (int start = 0; start < 8; start++) {
+            byte[] data = new byte[start + text.length];
+            System.arraycopy(text, 0, data, start, text.length);
+            ByteBuffer masked = buffer(data, false);
+            Masking.mask(masked, start, data.length, key);
+
+            Utf8Validator validator = new Utf8Validator();
+            assertTrue(Masking.unmaskUtf8(masked, start, data.length, key, validator));
+            assertTrue(validator.isComplete());
+            assertArrayEquals(data, bytes(masked));
+        }
+    }
+
+    @Test
+    void unmaskUtf8RejectsInvalidText() {
+        byte[] data = "12345678\u00ff".getBytes(StandardCharsets.ISO_8859_1);
+        ByteBuffer buffer = buffer(data, false);
+        Masking.mask(buffer, 0, data.length, Masking.key(KEY));
+
+        assertFalse(Masking.unmaskUtf8(buffer, 0, data.length, Masking.key(KEY), new Utf8Validator()));
+        // 校验失败时掩码仍然已经去掉
+        assertEquals((byte) 0xFF, buffer.get(8));
+    }
+
+    private static ByteBuffer buffer(byte[] data, boolean direct) {
+        ByteBuffer buffer = direct ? ByteBuffer.allocateDirect(data.length) : ByteBuffer.allocate(data.length);
+        buffer.put(data).clear();
+        return buffer;
+    }
+
+    private static byte[] bytes(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.capacity()];
+        buffer.duplicate().clear().get(bytes);
+        return bytes;
+    }
+
+}
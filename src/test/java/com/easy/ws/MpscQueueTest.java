@@ -0,0 +1,76 @@
+package com.easy.ws;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author Ray
+ * @date created in 2021/8/16 21:40
+ */
+class MpscQueueTest {
+
+    @Test
+    void pollInOfferOrder() {
+        MpscQueue<Integer> queue = new MpscQueue<>();
+        assertTrue(queue.isEmpty());
+        assertNull(queue.poll());
+
+        for (int i = 0; i < 10; i++) {
+            queue.offer(i);
+        }
+        assertFalse(queue.isEmpty());
+        for (int i = 0; i < 10; i++) {
+            assertEquals(i, queue.poll());
+        }
+        assertNull(queue.poll());
+        assertTrue(queue.isEmpty());
+    }
+
+    @Test
+    void concurrentProducers() throws InterruptedException {
+        int producers = 4;
+        int perProducer = 100_000;
+        MpscQueue<long[]> queue = new MpscQueue<>();
+        CountDownLatch start = new CountDownLatch(1);
+        Thread[] threads = new Thread[producers];
+        for (int p = 0; p < producers; p++) {
+            int producer = p;
+            threads[p] = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < perProducer; i++) {
+                    queue.offer(new long[]{producer, i});
+                }
+            });
+            threads[p].start();
+        }
+        start.countDown();
+
+        // 每个生产者提交的元素按顺序出队，不丢失也不重复
+        long[] next = new long[producers];
+        int received = 0;
+        while (received < producers * perProducer) {
+            long[] e = queue.poll();
+            if (e == null) {
+                Thread.onSpinWait();
+                continue;
+            }
+            assertEquals(next[(int) e[0]]++, e[1]);
+            received++;
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertNull(queue.poll());
+    }
+
+}
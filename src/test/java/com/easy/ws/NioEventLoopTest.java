@@ -0,0 +1,102 @@
+package com.easy.ws;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.Pipe;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author Ray
+ * @date created in 2021/8/22 16:10
+ */
+class NioEventLoopTest {
+
+    private WsEventLoop eventLoop;
+    private Pipe pipe;
+    private final List<Object> ready = new ArrayList<>();
+    private final WsEventLoop.Handler handler = (registration, readyOps) -> {
+        if ((readyOps & WsEventLoop.OP_READ) != 0) {
+            ready.add(registration.attachment());
+        }
+    };
+
+    @BeforeEach
+    void setUp() throws Exception {
+        eventLoop = new NioTransport().openEventLoop();
+        pipe = Pipe.open();
+        pipe.source().configureBlocking(false);
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        pipe.sink().close();
+        pipe.source().close();
+        eventLoop.close();
+    }
+
+    @Test
+    void readableChannelIsDispatchedWithAttachment() throws Exception {
+        Object attachment = new Object();
+        WsEventLoop.Registration registration = eventLoop.register(pipe.source(), WsEventLoop.OP_READ, attachment);
+        assertSame(attachment, registration.attachment());
+        assertEquals(0, eventLoop.pollNow(handler));
+
+        pipe.sink().write(ByteBuffer.wrap(new byte[]{1}));
+        assertEquals(1, eventLoop.poll(handler, 1000));
+        assertEquals(1, ready.size());
+        assertSame(attachment, ready.get(0));
+    }
+
+    @Test
+    void clearedInterestOpsSuppressEvents() throws Exception {
+        WsEventLoop.Registration registration = eventLoop.register(pipe.source(), WsEventLoop.OP_READ, "source");
+        pipe.sink().write(ByteBuffer.wrap(new byte[]{1}));
+
+        registration.interestOps(0);
+        assertEquals(0, eventLoop.pollNow(handler));
+        assertTrue(ready.isEmpty());
+
+        // 重新开启后，之前到达的数据仍然就绪
+        registration.interestOps(WsEventLoop.OP_READ);
+        assertEquals(1, eventLoop.poll(handler, 1000));
+        assertEquals(1, ready.size());
+    }
+
+    @Test
+    void closedChannelIsNotListed() throws Exception {
+        WsEventLoop.Registration registration = eventLoop.register(pipe.source(), WsEventLoop.OP_READ, "source");
+        assertEquals(1, eventLoop.registrations().size());
+
+        pipe.source().close();
+        assertFalse(registration.isValid());
+        assertTrue(eventLoop.registrations().isEmpty());
+    }
+
+    @Test
+    void wakeupUnblocksPoll() throws Exception {
+        eventLoop.register(pipe.source(), WsEventLoop.OP_READ, "source");
+        CompletableFuture<Integer> polled = CompletableFuture.supplyAsync(() -> {
+            try {
+                return eventLoop.poll(handler, 0);
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        Thread.sleep(50);
+        eventLoop.wakeup();
+        assertEquals(0, polled.get(5, TimeUnit.SECONDS));
+        assertTrue(ready.isEmpty());
+    }
+
+}
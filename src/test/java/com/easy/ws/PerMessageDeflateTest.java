@@ -0,0 +1,155 @@
+package com.easy.ws;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.Deflater;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author Ray
+ * @date created in 2021/8/12 22:10
+ */
+class PerMessageDeflateTest {
+
+    private static final ByteBufferAllocator ALLOCATOR = UnpooledByteBufferAllocator.INSTANCE;
+
+    private final PerMessageDeflateConfig config = new PerMessageDeflateConfig();
+
+    @Test
+    void negotiateDefaultOffer() {
+        assertEquals("permessage-deflate", negotiate("permessage-deflate"));
+        assertEquals("permessage-deflate", negotiate("x-webkit-deflate-frame, permessage-deflate"));
+        assertNull(negotiate("x-webkit-deflate-frame"));
+        assertNull(negotiate(null));
+        assertNull(PerMessageDeflate.negotiate("permessage-deflate", null));
+    }
+
+    @Test
+    void negotiateContextTakeover() {
+        assertEquals("permessage-deflate; server_no_context_takeover; client_no_context_takeover",
+                negotiate("permessage-deflate; server_no_context_takeover; client_no_context_takeover"));
+
+        config.setServerNoContextTakeover(true);
+        assertEquals("permessage-deflate; server_no_context_takeover", negotiate("permessage-deflate"));
+    }
+
+    @Test
+    void negotiateWindowBits() {
+        // 接受 server_max_window_bits=15 时响应中必须带上
+        assertEquals("permessage-deflate; server_max_window_bits=15",
+                negotiate("permessage-deflate; server_max_window_bits=15"));
+        // 不支持更小的服务端窗口，选择下一个可以接受的参数
+        assertEquals("permessage-deflate",
+                negotiate("permessage-deflate; server_max_window_bits=10, permessage-deflate"));
+        assertNull(negotiate("permessage-deflate; server_max_window_bits=10"));
+
+        assertEquals("permessage-deflate", negotiate("permessage-deflate; client_max_window_bits"));
+        config.setClientMaxWindowBits(10);
+        assertEquals("permessage-deflate; client_max_window_bits=10",
+                negotiate("permessage-deflate; client_max_window_bits"));
+        assertEquals("permessage-deflate; client_max_window_bits=9",
+                negotiate("permessage-deflate; client_max_window_bits=\"9\""));
+        // 客户端没有声明 client_max_window_bits 时不能限制客户端的窗口
+        assertEquals("permessage-deflate", negotiate("permessage-deflate"));
+        assertNull(negotiate("permessage-deflate; client_max_window_bits=16"));
+    }
+
+    @Test
+    void rejectUnknownParameter() {
+        assertNull(negotiate("permessage-deflate; unknown_param"));
+    }
+
+    @Test
+    void roundTripWithContextTakeover() throws IOException {
+        PerMessageDeflate server = PerMessageDeflate.negotiate("permessage-deflate", config);
+        PerMessageDeflate client = PerMessageDeflate.negotiate("permessage-deflate", config);
+        byte[] message = text(5000);
+
+        // 第二条消息引用第一条消息的上下文，压缩后更小
+        int first = roundTrip(server, client, message);
+        int second = roundTrip(server, client, message);
+        assertTrue(second < first, first + " / " + second);
+    }
+
+    @Test
+    void roundTripWithoutContextTakeover() throws IOException {
+        PerMessageDeflate server = PerMessageDeflate.negotiate("permessage-deflate; server_no_context_takeover",
+                config);
+        PerMessageDeflate client = PerMessageDeflate.negotiate("permessage-deflate", config);
+        byte[] message = text(5000);
+
+        assertEquals(roundTrip(server, client, message), roundTrip(server, client, message));
+        ByteBuffer withoutContext = PerMessageDeflate.deflateWithoutContext(ByteBuffer.wrap(message),
+                Deflater.DEFAULT_COMPRESSION);
+        assertArrayEquals(message, bytes(client.inflate(withoutContext, true, Integer.MAX_VALUE, ALLOCATOR)));
+    }
+
+    @Test
+    void inflateFragments() throws IOException {
+        PerMessageDeflate deflate = PerMessageDeflate.negotiate("permessage-deflate", config);
+        byte[] message = text(20000);
+        ByteBuffer compressed = deflate.deflate(ByteBuffer.wrap(message), ALLOCATOR).buffer;
+
+        // 压缩后的数据分成两片分别解压
+        int half = compressed.remaining() / 2;
+        ByteBuffer first = compressed.duplicate().limit(compressed.position() + half);
+        ByteBuffer second = compressed.duplicate().position(compressed.position() + half);
+        byte[] a = bytes(deflate.inflate(first, false, Integer.MAX_VALUE, ALLOCATOR));
+        byte[] b = bytes(deflate.inflate(second, true, Integer.MAX_VALUE, ALLOCATOR));
+        assertArrayEquals(message, FrameDecoderTest.concat(a, b));
+    }
+
+    @Test
+    void inflateUpToMaxSize() throws IOException {
+        PerMessageDeflate deflate = PerMessageDeflate.negotiate("permessage-deflate", config);
+        byte[] message = text(4096);
+
+        ByteBuffer compressed = deflate.deflate(ByteBuffer.wrap(message), ALLOCATOR).buffer;
+        assertArrayEquals(message, bytes(deflate.inflate(compressed, true, message.length, ALLOCATOR)));
+
+        ByteBuffer tooLarge = deflate.deflate(ByteBuffer.wrap(message), ALLOCATOR).buffer;
+        WsProtocolException e = assertThrows(WsProtocolException.class,
+                () -> deflate.inflate(tooLarge, true, message.length - 1, ALLOCATOR));
+        assertEquals(CloseStatus.MESSAGE_TOO_BIG, e.getCloseCode());
+    }
+
+    private String negotiate(String extensions) {
+        PerMessageDeflate deflate = PerMessageDeflate.negotiate(extensions, config);
+        return deflate == null ? null : deflate.getResponse();
+    }
+
+    /**
+     * 返回压缩后的长度
+     */
+    private static int roundTrip(PerMessageDeflate sender, PerMessageDeflate receiver, byte[] message)
+            throws IOException {
+        ByteBuffer compressed = sender.deflate(ByteBuffer.wrap(message), ALLOCATOR).buffer;
+        int length = compressed.remaining();
+        assertArrayEquals(message, bytes(receiver.inflate(compressed, true, Integer.MAX_VALUE, ALLOCATOR)));
+        return length;
+    }
+
+    private static byte[] bytes(RefCountedBuffer buffer) {
+        byte[] bytes = new byte[buffer.buffer.remaining()];
+        buffer.buffer.get(bytes);
+        buffer.release();
+        return bytes;
+    }
+
+    private static byte[] text(int length) {
+        StringBuilder sb = new StringBuilder(length);
+        for (int i = 0; sb.length() < length; i++) {
+            sb.append("message ").append(i % 97).append(' ');
+        }
+        return sb.substring(0, length).getBytes(StandardCharsets.UTF_8);
+    }
+
+}
@@ -0,0 +1,77 @@
+package com.easy.ws;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author Ray
+ * @date created in 2021/8/14 15:40
+ */
+class SerialExecutorTest {
+
+    @Test
+    void runsTasksInOrderOneAtATime() throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        try {
+            SerialExecutor executor = new SerialExecutor(pool);
+            List<Integer> order = Collections.synchronizedList(new ArrayList<>());
+            AtomicInteger running = new AtomicInteger();
+            AtomicBoolean overlapped = new AtomicBoolean();
+            CountDownLatch done = new CountDownLatch(1000);
+            for (int i = 0; i < 1000; i++) {
+                int n = i;
+                executor.execute(() -> {
+                    if (running.incrementAndGet() > 1) {
+                        overlapped.set(true);
+                    }
+                    order.add(n);
+                    running.decrementAndGet();
+                    done.countDown();
+                });
+            }
+
+            assertTrue(done.await(5, TimeUnit.SECONDS));
+            assertEquals(false, overlapped.get());
+            for (int i = 0; i < 1000; i++) {
+                assertEquals(i, order.get(i));
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    void rejectedTaskIsRolledBack() {
+        AtomicBoolean reject = new AtomicBoolean(true);
+        SerialExecutor executor = new SerialExecutor(task -> {
+            if (reject.get()) {
+                throw new RejectedExecutionException("rejected");
+            }
+            task.run();
+        });
+        List<String> ran = new ArrayList<>();
+
+        assertThrows(RejectedExecutionException.class, () -> executor.execute(() -> ran.add("rejected")));
+        // 被拒绝的任务已经撤回，之后提交的任务可以重新调度，不会卡住
+        reject.set(false);
+        executor.execute(() -> ran.add("next"));
+
+        assertEquals(Arrays.asList("next"), ran);
+    }
+
+}
@@ -0,0 +1,307 @@
+package com.easy.ws;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketAddress;
+import java.net.SocketOption;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SocketChannel;
+import java.nio.channels.spi.SelectorProvider;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 测试用的 SocketChannel：每次 read 返回一段预先放入的数据，write 记录写出的字节。
+ * writeCapacity 模拟发送缓冲区剩余空间，用完之后 write 只写出一部分或者返回 0
+ *
+ * @author Ray
+ * @date created in 2021/8/7 17:20
+ */
+class StubSocketChannel extends SocketChannel {
+
+    private static final InetSocketAddress ADDRESS = new InetSocketAddress("127.0.0.1", 12345);
+
+    private final Deque<byte[]> inbound = new ConcurrentLinkedDeque<>();
+    private volatile boolean eof;
+    private final ByteArrayOutputStream written = new ByteArrayOutputStream();
+    private long writeCapacity = Long.MAX_VALUE;
+    private final AtomicInteger writeCalls = new AtomicInteger();
+    private final Key key = new Key(this);
+
+    StubSocketChannel() {
+        super(SelectorProvider.provider());
+    }
+
+    /**
+     * 之后的每次 read 依次返回一段数据
+     */
+    void feed(byte[]... chunks) {
+        inbound.addAll(Arrays.asList(chunks));
+    }
+
+    void shutdownPeer() {
+        eof = true;
+    }
+
+    synchronized void setWriteCapacity(long writeCapacity) {
+        this.writeCapacity = writeCapacity;
+    }
+
+    int getWriteCalls() {
+        return writeCalls.get();
+    }
+
+    Key getKey() {
+        return key;
+    }
+
+    /**
+     * 取出目前写出的所有字节
+     */
+    synchronized byte[] takeWritten() {
+        byte[] bytes = written.toByteArray();
+        written.reset();
+        return bytes;
+    }
+
+    /**
+     * 取出握手响应（到空行为止），之后的帧留在缓冲区中
+     */
+    synchronized String takeHttpResponse() {
+        String text = new String(written.toByteArray(), StandardCharsets.ISO_8859_1);
+        int end = text.indexOf("\r\n\r\n");
+        if (end < 0) {
+            return "";
+        }
+        byte[] bytes = written.toByteArray();
+        written.reset();
+        written.write(bytes, end + 4, bytes.length - end - 4);
+        return text.substring(0, end + 4);
+    }
+
+    /**
+     * 取出目前写出的字节并按服务端的帧（没有掩码）解析，不完整的帧留到下次
+     */
+    synchronized List<Frame> takeFrames() {
+        byte[] bytes = written.toByteArray();
+        List<Frame> frames = new ArrayList<>();
+        int pos = 0;
+        while (bytes.length - pos >= 2) {
+            int b0 = bytes[pos] & 0xFF;
+            int len = bytes[pos + 1] & 0x7F;
+            int header = 2;
+            if (len == 126) {
+                if (bytes.length - pos < 4) {
+                    break;
+                }
+                len = ((bytes[pos + 2] & 0xFF) << 8) | (bytes[pos + 3] & 0xFF);
+                header = 4;
+            } else if (len == 127) {
+                if (bytes.length - pos < 10) {
+                    break;
+                }
+                len = (int) ByteBuffer.wrap(bytes, pos + 2, 8).getLong();
+                header = 10;
+            }
+            if (bytes.length - pos < header + len) {
+                break;
+            }
+            frames.add(new Frame((b0 & 0x80) != 0, (b0 >> 4) & 0x7, b0 & 0xF,
+                    Arrays.copyOfRange(bytes, pos + header, pos + header + len)));
+            pos += header + len;
+        }
+        written.reset();
+        written.write(bytes, pos, bytes.length - pos);
+        return frames;
+    }
+
+    @Override
+    public int read(ByteBuffer dst) throws IOException {
+        if (!isOpen()) {
+            throw new ClosedChannelException();
+        }
+        byte[] chunk = inbound.poll();
+        if (chunk == null) {
+            return eof ? -1 : 0;
+        }
+        if (chunk.length > dst.remaining()) {
+            // 放不下时先读一部分，剩余的留到下次
+            int n = dst.remaining();
+            dst.put(chunk, 0, n);
+            inbound.addFirst(Arrays.copyOfRange(chunk, n, chunk.length));
+            return n;
+        }
+        dst.put(chunk);
+        return chunk.length;
+    }
+
+    @Override
+    public long read(ByteBuffer[] dsts, int offset, int length) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public int write(ByteBuffer src) throws IOException {
+        return (int) write(new ByteBuffer[]{src}, 0, 1);
+    }
+
+    @Override
+    public synchronized long write(ByteBuffer[] srcs, int offset, int length) throws IOException {
+        if (!isOpen()) {
+            throw new ClosedChannelException();
+        }
+        writeCalls.incrementAndGet();
+        long total = 0;
+        for (int i = offset; i < offset + length && writeCapacity > 0; i++) {
+            ByteBuffer src = srcs[i];
+            int n = (int) Math.min(src.remaining(), writeCapacity);
+            byte[] bytes = new byte[n];
+            src.get(bytes);
+            written.write(bytes, 0, n);
+            writeCapacity -= n;
+            total += n;
+        }
+        return total;
+    }
+
+    @Override
+    public SocketChannel bind(SocketAddress local) {
+        return this;
+    }
+
+    @Override
+    public <T> SocketChannel setOption(SocketOption<T> name, T value) {
+        return this;
+    }
+
+    @Override
+    public <T> T getOption(SocketOption<T> name) {
+        return null;
+    }
+
+    @Override
+    public Set<SocketOption<?>> supportedOptions() {
+        return Collections.emptySet();
+    }
+
+    @Override
+    public SocketChannel shutdownInput() {
+        return this;
+    }
+
+    @Override
+    public SocketChannel shutdownOutput() {
+        return this;
+    }
+
+    @Override
+    public Socket socket() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public boolean isConnected() {
+        return isOpen();
+    }
+
+    @Override
+    public boolean isConnectionPending() {
+        return false;
+    }
+
+    @Override
+    public boolean connect(SocketAddress remote) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public boolean finishConnect() {
+        return true;
+    }
+
+    @Override
+    public SocketAddress getRemoteAddress() {
+        return ADDRESS;
+    }
+
+    @Override
+    public SocketAddress getLocalAddress() {
+        return ADDRESS;
+    }
+
+    @Override
+    protected void implCloseSelectableChannel() {
+    }
+
+    @Override
+    protected void implConfigureBlocking(boolean block) {
+    }
+
+    /**
+     * 服务端写出的一个帧
+     */
+    static final class Frame {
+
+        final boolean fin;
+        final int rsv;
+        final int opCode;
+        final byte[] payload;
+
+        Frame(boolean fin, int rsv, int opCode, byte[] payload) {
+            this.fin = fin;
+            this.rsv = rsv;
+            this.opCode = opCode;
+            this.payload = payload;
+        }
+
+        int closeCode() {
+            return ((payload[0] & 0xFF) << 8) | (payload[1] & 0xFF);
+        }
+
+    }
+
+    /**
+     * 只记录 interestOps 的注册，不注册到事件循环
+     */
+    static final class Key implements WsEventLoop.Registration {
+
+        private final SocketChannel channel;
+        private volatile int interestOps = WsEventLoop.OP_READ;
+
+        Key(SocketChannel channel) {
+            this.channel = channel;
+        }
+
+        @Override
+        public Object attachment() {
+            return null;
+        }
+
+        @Override
+        public boolean isValid() {
+            return channel.isOpen();
+        }
+
+        @Override
+        public int interestOps() {
+            return interestOps;
+        }
+
+        @Override
+        public void interestOps(int ops) {
+            this.interestOps = ops;
+        }
+
+    }
+
+}
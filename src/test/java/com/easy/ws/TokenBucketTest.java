@@ -0,0 +1,55 @@
+package com.easy.ws;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * @author Ray
+ * @date created in 2021/8/19 21:30
+ */
+class TokenBucketTest {
+
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+    private static final long START = 5 * SECOND;
+
+    @Test
+    void allowBurstUpToCapacity() {
+        TokenBucket bucket = new TokenBucket(100, START);
+        for (int i = 0; i < 100; i++) {
+            assertEquals(0, bucket.consume(1, START));
+        }
+        // 欠一个令牌，需要等待生成一个令牌的时间
+        assertEquals(SECOND / 100, bucket.consume(1, START));
+    }
+
+    @Test
+    void refillOverTime() {
+        TokenBucket bucket = new TokenBucket(100, START);
+        bucket.consume(100, START);
+
+        assertEquals(0, bucket.consume(50, START + SECOND / 2));
+        assertEquals(SECOND / 100, bucket.consume(1, START + SECOND / 2));
+        // 空闲很久之后最多只能积累一秒的令牌
+        assertEquals(0, bucket.consume(100, START + 10 * SECOND));
+        assertEquals(SECOND / 100, bucket.consume(1, START + 10 * SECOND));
+    }
+
+    @Test
+    void debtIsRepaidBeforeNewTokens() {
+        TokenBucket bucket = new TokenBucket(10, START);
+        // 一次消费超过容量，欠下一秒的令牌
+        assertEquals(SECOND, bucket.consume(20, START));
+        assertEquals(SECOND / 2, bucket.consume(0, START + SECOND / 2));
+        assertEquals(0, bucket.consume(0, START + SECOND));
+    }
+
+    @Test
+    void rejectInvalidRate() {
+        assertThrows(IllegalArgumentException.class, () -> new TokenBucket(0, START));
+    }
+
+}
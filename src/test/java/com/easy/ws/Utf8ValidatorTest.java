@@ -0,0 +1,166 @@
+package com.easy.ws;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author Ray
+ * @date created in 2021/8/21 16:50
+ */
+class Utf8ValidatorTest {
+
+    @Test
+    void acceptValidText() {
+        // 各种长度编码的边界值
+        int[] codePoints = {0, 0x7F, 0x80, 0x7FF, 0x800, 0xD7FF, 0xE000, 0xFFFF, 0x10000, 0x10FFFF};
+        for (int codePoint : codePoints) {
+            assertTrue(Utf8Validator.isValidUtf8(utf8(new String(Character.toChars(codePoint)))),
+                    Integer.toHexString(codePoint));
+        }
+        assertTrue(Utf8Validator.isValidUtf8(utf8("plain ascii text that is longer than eight bytes")));
+        // 中文 😀 Ελληνικά
+        assertTrue(Utf8Validator.isValidUtf8(
+                utf8("\u4e2d\u6587 \uD83D\uDE00 \u0395\u03bb\u03bb\u03b7\u03bd\u03b9\u03ba\u03ac")));
+        assertTrue(Utf8Validator.isValidUtf8(ByteBuffer.allocate(0)));
+    }
+
+    @Test
+    void rejectInvalidSequences() {
+        int[][] invalid = {
+                {0x80},                     // 单独的后续字节
+                {0xC0, 0x80},               // 过长编码
+                {0xE0, 0x80, 0x80},         // 过长编码
+                {0xED, 0xA0, 0x80},         // 代理字符 U+D800
+                {0xF4, 0x90, 0x80, 0x80},   // 超过 U+10FFFF
+                {0xF5, 0x80, 0x80, 0x80},
+                {0xFF},
+                {0xC3, 0x28},               // 后续字节不合法
+        };
+        for (int[] sequence : invalid) {
+            assertFalse(Utf8Validator.isValidUtf8(bytes(sequence)), Arrays.toString(sequence));
+        }
+    }
+
+    @Test
+    void incompleteSequenceIsValidButNotComplete() {
+        Utf8Validator validator = new Utf8Validator();
+        ByteBuffer buffer = bytes(0xE4, 0xB8);
+        assertTrue(validator.update(buffer, 0, 2));
+        assertTrue(validator.isValid());
+        assertFalse(validator.isComplete());
+        assertFalse(Utf8Validator.isValidUtf8(buffer));
+    }
+
+    @Test
+    void characterSplitAtEveryPosition() {
+        ByteBuffer buffer = utf8("abcdefgh\u4e2d\u6587\uD83D\uDE00ijklmnop \u00e9");
+        int length = buffer.remaining();
+        for (int split = 0; split <= length; split++) {
+            Utf8Validator validator = new Utf8Validator();
+            assertTrue(validator.update(buffer, 0, split));
+            assertTrue(validator.update(buffer, split, length));
+            assertTrue(validator.isComplete(), "split at " + split);
+        }
+    }
+
+    @Test
+    void rejectedStateIsSticky() {
+        Utf8Validator validator = new Utf8Validator();
+        assertFalse(validator.update(bytes(0xFF), 0, 1));
+        assertFalse(validator.update(utf8("ok"), 0, 2));
+        validator.reset();
+        assertTrue(validator.update(utf8("ok"), 0, 2));
+        assertTrue(validator.isComplete());
+    }
+
+    @Test
+    void agreeWithJdkDecoder() {
+        Random random = new Random(42);
+        for (int n = 0; n < 20_000; n++) {
+            byte[] data = new byte[random.nextInt(24)];
+            for (int i = 0; i < data.length; i++) {
+                // 偏向多字节序列的首字节和后续字节
+                int r = random.nextInt(4);
+                data[i] = (byte) (r == 0 ? random.nextInt(0x80) : r == 1 ? 0x80 + random.nextInt(0x40)
+                        : 0xC0 + random.nextInt(0x40));
+            }
+            assertEquals(jdkValid(data), Utf8Validator.isValidUtf8(ByteBuffer.wrap(data)), Arrays.toString(data));
+        }
+    }
+
+    @Test
+    void decoderValidatesTextAcrossFragments() throws IOException {
+        byte[] text = "emoji \uD83D\uDE00".getBytes(StandardCharsets.UTF_8);
+        // 😀 的 4 个字节分在两个分片中，中间插入一个 ping
+        int split = text.length - 2;
+        byte[] data = FrameDecoderTest.concat(
+                FrameDecoderTest.frame(false, 0, FrameType.TEXT, Arrays.copyOf(text, split)),
+                FrameDecoderTest.frame(true, 0, FrameType.PING, new byte[0]),
+                FrameDecoderTest.frame(true, 0, FrameType.CONTINUATION, Arrays.copyOfRange(text, split, text.length)));
+        int[] frames = new int[1];
+        new FrameDecoder(1024).decode(ByteBuffer.wrap(data), (fin, rsv, frameType, payload) -> frames[0]++);
+        assertEquals(3, frames[0]);
+    }
+
+    @Test
+    void decoderRejectsTruncatedOrInvalidText() {
+        byte[] text = "emoji \uD83D\uDE00".getBytes(StandardCharsets.UTF_8);
+        byte[] truncated = FrameDecoderTest.frame(true, 0, FrameType.TEXT, Arrays.copyOf(text, text.length - 1));
+        WsProtocolException e = assertThrows(WsProtocolException.class,
+                () -> new FrameDecoder(1024).decode(ByteBuffer.wrap(truncated), (fin, rsv, frameType, payload) -> {
+                }));
+        assertEquals(CloseStatus.INVALID_PAYLOAD, e.getCloseCode());
+
+        byte[] latin1 = FrameDecoderTest.frame(true, 0, FrameType.TEXT,
+                "caf\u00e9".getBytes(StandardCharsets.ISO_8859_1));
+        e = assertThrows(WsProtocolException.class,
+                () -> new FrameDecoder(1024).decode(ByteBuffer.wrap(latin1), (fin, rsv, frameType, payload) -> {
+                }));
+        assertEquals(CloseStatus.INVALID_PAYLOAD, e.getCloseCode());
+
+        // 二进制消息不校验
+        byte[] binary = FrameDecoderTest.frame(true, 0, FrameType.BINARY, new byte[]{(byte) 0xFF});
+        int[] frames = new int[1];
+        assertDoesNotThrow(() -> new FrameDecoder(1024).decode(ByteBuffer.wrap(binary),
+                (fin, rsv, frameType, payload) -> frames[0]++));
+        assertEquals(1, frames[0]);
+    }
+
+    private static boolean jdkValid(byte[] data) {
+        try {
+            StandardCharsets.UTF_8.newDecoder()
+                    .onMalformedInput(CodingErrorAction.REPORT)
+                    .onUnmappableCharacter(CodingErrorAction.REPORT)
+                    .decode(ByteBuffer.wrap(data));
+            return true;
+        } catch (CharacterCodingException e) {
+            return false;
+        }
+    }
+
+    private static ByteBuffer utf8(String s) {
+        return ByteBuffer.wrap(s.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static ByteBuffer bytes(int... values) {
+        ByteBuffer buffer = ByteBuffer.allocate(values.length);
+        for (int value : values) {
+            buffer.put((byte) value);
+        }
+        return buffer.flip();
+    }
+
+}
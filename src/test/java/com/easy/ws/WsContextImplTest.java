@@ -0,0 +1,528 @@
+package com.easy.ws;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static com.easy.ws.FrameDecoderTest.bytes;
+import static com.easy.ws.FrameDecoderTest.concat;
+import static com.easy.ws.FrameDecoderTest.frame;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 在真实的 WorkerThread 上驱动 WsContextImpl，读写都通过 StubSocketChannel 完成
+ *
+ * @author Ray
+ * @date created in 2021/8/7 17:40
+ */
+class WsContextImplTest {
+
+    private static final byte[] HANDSHAKE = ("GET / HTTP/1.1\r\nHost: localhost\r\nUpgrade: websocket\r\n"
+            + "Connection: Upgrade\r\nSec-WebSocket-Key: dGhlIHNhbXBsZSBub25jZQ==\r\n"
+            + "Sec-WebSocket-Version: 13\r\n\r\n").getBytes(StandardCharsets.US_ASCII);
+
+    private final WsConfig config = new WsConfig();
+    private final RecordingCallback callback = new RecordingCallback();
+    private final StubSocketChannel channel = new StubSocketChannel();
+    private WorkerThread worker;
+    private WsContextImpl context;
+
+    @BeforeEach
+    void setUp() {
+        config.setPingIntervalMillis(0);
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        if (worker != null) {
+            worker.close();
+            worker.join(5000);
+        }
+    }
+
+    @Test
+    void decodeFrameSplitAcrossReads() throws Exception {
+        open();
+        byte[] data = frame(true, 0, FrameType.BINARY, bytes(300));
+        byte[][] chunks = new byte[data.length][];
+        for (int i = 0; i < data.length; i++) {
+            chunks[i] = new byte[]{data[i]};
+        }
+        channel.feed(chunks);
+        run(context::handlerPayload);
+
+        assertEquals(1, callback.messages.size());
+        assertArrayEquals(bytes(300), callback.messages.get(0));
+    }
+
+    @Test
+    void decodeCoalescedFrames() throws Exception {
+        open();
+        channel.feed(concat(frame(true, 0, FrameType.BINARY, bytes(10)), frame(true, 0, FrameType.BINARY, bytes(20)),
+                frame(true, 0, FrameType.BINARY, bytes(30))));
+        run(context::handlerPayload);
+
+        assertEquals(3, callback.messages.size());
+        assertArrayEquals(bytes(10), callback.messages.get(0));
+        assertArrayEquals(bytes(20), callback.messages.get(1));
+        assertArrayEquals(bytes(30), callback.messages.get(2));
+    }
+
+    @Test
+    void decodeMessageLargerThanReadBuffer() throws Exception {
+        config.setReadBufferSize(16);
+        open();
+        byte[] data = frame(true, 0, FrameType.BINARY, bytes(1000));
+        for (int i = 0; i < data.length; i += 100) {
+            channel.feed(Arrays.copyOfRange(data, i, Math.min(i + 100, data.length)));
+        }
+        run(context::handlerPayload);
+
+        assertEquals(1, callback.messages.size());
+        assertArrayEquals(bytes(1000), callback.messages.get(0));
+    }
+
+    @Test
+    void unmaskedFrameClosesWithProtocolError() throws Exception {
+        open();
+        channel.feed(new byte[]{(byte) 0x82, 0x01, 0x05});
+        run(() -> {
+            try {
+                context.handlerPayload();
+            } catch (WsProtocolException e) {
+                context.failConnection(e);
+            }
+        });
+
+        List<StubSocketChannel.Frame> frames = channel.takeFrames();
+        assertEquals(1, frames.size());
+        assertEquals(FrameType.CLOSE_CONNECTION.getOpCode(), frames.get(0).opCode);
+        assertEquals(CloseStatus.PROTOCOL_ERROR, frames.get(0).closeCode());
+        assertEquals(0, channel.getKey().interestOps() & WsEventLoop.OP_READ);
+        assertTrue(callback.messages.isEmpty());
+    }
+
+    @Test
+    void partialWriteWaitsForWritableAndKeepsOrder() throws Exception {
+        open();
+        channel.setWriteCapacity(10);
+        CompletableFuture<Void> first = send(bytes(100));
+        CompletableFuture<Void> second = send(bytes(200));
+
+        // 发送缓冲区已满：关注 OP_WRITE，消息还没有发送完成
+        assertTrue((channel.getKey().interestOps() & WsEventLoop.OP_WRITE) != 0);
+        assertFalse(first.isDone());
+        assertFalse(second.isDone());
+        assertTrue(channel.takeFrames().isEmpty());
+
+        channel.setWriteCapacity(Long.MAX_VALUE);
+        run(context::flush);
+
+        List<StubSocketChannel.Frame> frames = channel.takeFrames();
+        assertEquals(2, frames.size());
+        assertArrayEquals(bytes(100), frames.get(0).payload);
+        assertArrayEquals(bytes(200), frames.get(1).payload);
+        assertTrue(first.isDone() && !first.isCompletedExceptionally());
+        assertTrue(second.isDone() && !second.isCompletedExceptionally());
+        assertEquals(0, channel.getKey().interestOps() & WsEventLoop.OP_WRITE);
+        assertEquals(0, call(context::getPendingBytes));
+    }
+
+    @Test
+    void writabilityFollowsWaterMarks() throws Exception {
+        config.setWriteBufferWaterMark(100, 1000);
+        open();
+        channel.setWriteCapacity(0);
+
+        send(bytes(600));
+        assertTrue(context.isWritable());
+        // 待发送 1208 字节，超过高水位
+        send(bytes(600));
+        assertFalse(context.isWritable());
+        assertEquals(1, callback.writabilityChanges);
+
+        // 还剩 508 字节，没有降到低水位以下
+        channel.setWriteCapacity(700);
+        run(context::flush);
+        assertFalse(context.isWritable());
+
+        channel.setWriteCapacity(Long.MAX_VALUE);
+        run(context::flush);
+        assertTrue(context.isWritable());
+        assertEquals(2, callback.writabilityChanges);
+        assertEquals(2, channel.takeFrames().size());
+    }
+
+    @Test
+    void closingChannelFailsPendingPromises() throws Exception {
+        open();
+        channel.setWriteCapacity(0);
+        CompletableFuture<Void> promise = send(bytes(100));
+        run(() -> context.closeChannel(CloseReason.EOF));
+
+        ExecutionException e = assertThrows(ExecutionException.class, () -> promise.get(5, TimeUnit.SECONDS));
+        assertTrue(e.getCause() instanceof ClosedChannelException);
+        // 关闭之后发送的消息直接失败
+        assertTrue(send(bytes(10)).isCompletedExceptionally());
+    }
+
+    @Test
+    void queuedFramesGoOutInOneGatheringWrite() throws Exception {
+        open();
+        channel.setWriteCapacity(0);
+        for (int i = 1; i <= 3; i++) {
+            send(bytes(i * 10));
+        }
+
+        int writeCalls = channel.getWriteCalls();
+        channel.setWriteCapacity(Long.MAX_VALUE);
+        run(context::flush);
+
+        assertEquals(1, channel.getWriteCalls() - writeCalls);
+        List<StubSocketChannel.Frame> frames = channel.takeFrames();
+        assertEquals(3, frames.size());
+        for (int i = 0; i < 3; i++) {
+            assertArrayEquals(bytes((i + 1) * 10), frames.get(i).payload);
+        }
+    }
+
+    @Test
+    void gatheringWriteIsLimitedToMaxBuffers() throws Exception {
+        open();
+        channel.setWriteCapacity(0);
+        for (int i = 1; i <= 100; i++) {
+            send(bytes(i));
+        }
+
+        int writeCalls = channel.getWriteCalls();
+        channel.setWriteCapacity(Long.MAX_VALUE);
+        run(context::flush);
+
+        // 每个帧占用帧头和消息体两个 buffer，每次最多写出 32 个帧
+        int framesPerWrite = WorkerThread.MAX_GATHERING_BUFFERS / 2;
+        assertEquals((100 + framesPerWrite - 1) / framesPerWrite, channel.getWriteCalls() - writeCalls);
+        List<StubSocketChannel.Frame> frames = channel.takeFrames();
+        assertEquals(100, frames.size());
+        for (int i = 0; i < 100; i++) {
+            assertArrayEquals(bytes(i + 1), frames.get(i).payload);
+        }
+    }
+
+    @Test
+    void controlFrameGoesAfterStartedFrameAndBeforeQueuedData() throws Exception {
+        open();
+        channel.setWriteCapacity(5);
+        send(bytes(100));
+        send(bytes(200));
+        channel.feed(frame(true, 0, FrameType.PING, bytes(3)));
+        run(context::handlerPayload);
+
+        channel.setWriteCapacity(Long.MAX_VALUE);
+        run(context::flush);
+
+        List<StubSocketChannel.Frame> frames = channel.takeFrames();
+        assertEquals(3, frames.size());
+        assertArrayEquals(bytes(100), frames.get(0).payload);
+        assertEquals(FrameType.PONG.getOpCode(), frames.get(1).opCode);
+        assertArrayEquals(bytes(3), frames.get(1).payload);
+        assertArrayEquals(bytes(200), frames.get(2).payload);
+    }
+
+    @Test
+    void readBufferGrowsWithReceivedBytesNotDeclaredLength() throws Exception {
+        RecordingAllocator recording = new RecordingAllocator();
+        config.setAllocator(recording);
+        config.setReadBufferSize(1024);
+        open();
+        recording.maxCapacity = 0;
+
+        // 帧头声明 1MB，只收到 100 字节时不能按声明的长度分配
+        byte[] data = frame(true, 0, FrameType.BINARY, bytes(1 << 20));
+        channel.feed(Arrays.copyOf(data, 14 + 100));
+        run(context::handlerPayload);
+        assertTrue(recording.maxCapacity <= 1024, "allocated " + recording.maxCapacity);
+
+        for (int i = 14 + 100; i < data.length; i += 64 * 1024) {
+            channel.feed(Arrays.copyOfRange(data, i, Math.min(i + 64 * 1024, data.length)));
+        }
+        run(context::handlerPayload);
+        assertEquals(1, callback.messages.size());
+        assertArrayEquals(bytes(1 << 20), callback.messages.get(0));
+        assertEquals(1 << 20, recording.maxCapacity);
+    }
+
+    @Test
+    void broadcastIsCompressedForPeersWithoutContextTakeover() throws Exception {
+        config.setPerMessageDeflate(new PerMessageDeflateConfig());
+        open(("GET / HTTP/1.1\r\nHost: localhost\r\nUpgrade: websocket\r\nConnection: Upgrade\r\n"
+                + "Sec-WebSocket-Key: dGhlIHNhbXBsZSBub25jZQ==\r\nSec-WebSocket-Version: 13\r\n"
+                + "Sec-WebSocket-Extensions: permessage-deflate; server_no_context_takeover\r\n\r\n")
+                .getBytes(StandardCharsets.US_ASCII));
+
+        byte[] message = new byte[4096];
+        Arrays.fill(message, (byte) 'a');
+        Broadcaster.broadcast(Collections.singletonList(context),
+                new BufferWsPayload(FrameType.BINARY, ByteBuffer.wrap(message)), null, config);
+        // 等待 WorkerThread 执行完广播任务
+        run(() -> { });
+
+        List<StubSocketChannel.Frame> frames = channel.takeFrames();
+        assertEquals(1, frames.size());
+        assertEquals(PerMessageDeflate.RSV1, frames.get(0).rsv);
+        assertTrue(frames.get(0).payload.length < message.length);
+    }
+
+    @Test
+    void bytesAfterFailedHandshakeAreNotDecoded() throws Exception {
+        start();
+        channel.setWriteCapacity(0);
+        // 缺少 Sec-WebSocket-Key
+        channel.feed(("GET / HTTP/1.1\r\nHost: localhost\r\nUpgrade: websocket\r\nConnection: Upgrade\r\n"
+                + "Sec-WebSocket-Version: 13\r\n\r\n").getBytes(StandardCharsets.US_ASCII));
+        run(context::handlerPayload);
+        assertEquals(0, channel.getKey().interestOps() & WsEventLoop.OP_READ);
+
+        // 400 响应还没有发送完成时收到的数据
+        channel.feed(frame(true, 0, FrameType.BINARY, bytes(10)));
+        run(context::handlerPayload);
+        assertTrue(callback.messages.isEmpty());
+        assertTrue(callback.opened.isEmpty());
+
+        channel.setWriteCapacity(Long.MAX_VALUE);
+        run(context::flush);
+        assertTrue(channel.takeHttpResponse().startsWith("HTTP/1.1 400"));
+        assertFalse(channel.isOpen());
+    }
+
+    @Test
+    void closeIsSentAfterQueuedDataFrames() throws Exception {
+        config.setFragmentSize(1000);
+        open();
+        channel.setWriteCapacity(5);
+        CompletableFuture<Void> fragmented = send(bytes(3000));
+        CompletableFuture<Void> small = send(bytes(100));
+        run(() -> context.close(CloseStatus.NORMAL, "bye"));
+        // 发送 close 帧之后不能再发送数据帧
+        assertTrue(send(bytes(10)).isCompletedExceptionally());
+
+        channel.setWriteCapacity(Long.MAX_VALUE);
+        run(context::flush);
+
+        List<StubSocketChannel.Frame> frames = channel.takeFrames();
+        int[] opCodes = frames.stream().mapToInt(frame -> frame.opCode).toArray();
+        assertArrayEquals(new int[]{FrameType.BINARY.getOpCode(), FrameType.CONTINUATION.getOpCode(),
+                FrameType.CONTINUATION.getOpCode(), FrameType.BINARY.getOpCode(),
+                FrameType.CLOSE_CONNECTION.getOpCode()}, opCodes);
+        assertEquals(CloseStatus.NORMAL, frames.get(4).closeCode());
+        assertTrue(fragmented.isDone() && !fragmented.isCompletedExceptionally());
+        assertTrue(small.isDone() && !small.isCompletedExceptionally());
+    }
+
+    @Test
+    void pingReplyMayPassQueuedDataButNotClose() throws Exception {
+        open();
+        channel.setWriteCapacity(0);
+        send(bytes(100));
+        run(() -> context.close(CloseStatus.NORMAL, ""));
+        channel.feed(frame(true, 0, FrameType.PING, bytes(2)));
+        run(context::handlerPayload);
+
+        channel.setWriteCapacity(Long.MAX_VALUE);
+        run(context::flush);
+
+        // close 帧之后收到的 PING 不再回复
+        List<StubSocketChannel.Frame> frames = channel.takeFrames();
+        assertEquals(2, frames.size());
+        assertEquals(FrameType.BINARY.getOpCode(), frames.get(0).opCode);
+        assertEquals(FrameType.CLOSE_CONNECTION.getOpCode(), frames.get(1).opCode);
+    }
+
+    @Test
+    void clientCloseIsEchoedThenChannelClosed() throws Exception {
+        open();
+        channel.feed(frame(true, 0, FrameType.CLOSE_CONNECTION, new byte[]{0x03, (byte) 0xE9}));
+        run(context::handlerPayload);
+
+        List<StubSocketChannel.Frame> frames = channel.takeFrames();
+        assertEquals(1, frames.size());
+        assertEquals(FrameType.CLOSE_CONNECTION.getOpCode(), frames.get(0).opCode);
+        assertEquals(CloseStatus.GOING_AWAY, frames.get(0).closeCode());
+        assertFalse(channel.isOpen());
+        assertEquals(Collections.singletonList(CloseStatus.GOING_AWAY), callback.closeCodes);
+    }
+
+    @Test
+    void serverCloseCompletesWhenClientReplies() throws Exception {
+        open();
+        run(() -> context.close(CloseStatus.NORMAL, "bye"));
+        List<StubSocketChannel.Frame> frames = channel.takeFrames();
+        assertEquals(1, frames.size());
+        assertEquals("bye", new String(frames.get(0).payload, 2, 3, StandardCharsets.UTF_8));
+        // 等待客户端回复 close 帧
+        assertTrue(channel.isOpen());
+
+        channel.feed(frame(true, 0, FrameType.CLOSE_CONNECTION, new byte[]{0x03, (byte) 0xE8}));
+        run(context::handlerPayload);
+        assertFalse(channel.isOpen());
+        assertEquals(Collections.singletonList(CloseStatus.NORMAL), callback.closeCodes);
+    }
+
+    @Test
+    void rejectedCallbackClosesConnectionWithInternalError() throws Exception {
+        config.setCallbackExecutor(task -> {
+            throw new RejectedExecutionException("executor is shut down");
+        });
+        start();
+        channel.feed(HANDSHAKE);
+        run(context::handlerPayload);
+
+        // onOpen 被拒绝：不能只打印日志，连接以 1011 关闭
+        assertTrue(channel.takeHttpResponse().startsWith("HTTP/1.1 101"));
+        List<StubSocketChannel.Frame> frames = channel.takeFrames();
+        assertEquals(1, frames.size());
+        assertEquals(FrameType.CLOSE_CONNECTION.getOpCode(), frames.get(0).opCode);
+        assertEquals(CloseStatus.INTERNAL_ERROR, frames.get(0).closeCode());
+    }
+
+    void open() throws Exception {
+        open(HANDSHAKE);
+    }
+
+    /**
+     * 启动 WorkerThread 并完成握手，清空握手响应
+     */
+    void open(byte[] handshake) throws Exception {
+        start();
+        channel.feed(handshake);
+        run(context::handlerPayload);
+        String response = channel.takeHttpResponse();
+        assertTrue(response.startsWith("HTTP/1.1 101"), response);
+        assertFalse(callback.opened.isEmpty());
+    }
+
+    /**
+     * 启动 WorkerThread，创建还没有握手的连接
+     */
+    void start() throws Exception {
+        worker = new WorkerThread();
+        worker.setConfig(config);
+        worker.setWsCallback(callback);
+        worker.setPlugin(Collections.emptyList());
+        worker.start();
+        context = call(() -> {
+            WsContextImpl wsContext = new WsContextImpl(worker, channel, callback, Collections.emptyList());
+            wsContext.setRegistration(channel.getKey());
+            wsContext.startHandshake(System.nanoTime());
+            return wsContext;
+        });
+    }
+
+    CompletableFuture<Void> send(byte[] data) throws Exception {
+        return call(() -> context.send(new BufferWsPayload(FrameType.BINARY, ByteBuffer.wrap(data))));
+    }
+
+    /**
+     * 在 WorkerThread 中执行并等待完成
+     */
+    <T> T call(Callable<T> task) throws Exception {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        worker.execute(() -> {
+            try {
+                future.complete(task.call());
+            } catch (Throwable e) {
+                future.completeExceptionally(e);
+            }
+        });
+        return future.get(5, TimeUnit.SECONDS);
+    }
+
+    void run(ThrowingRunnable task) throws Exception {
+        call(() -> {
+            task.run();
+            return null;
+        });
+    }
+
+    interface ThrowingRunnable {
+
+        void run() throws Exception;
+
+    }
+
+    /**
+     * 记录分配过的最大 buffer
+     */
+    static class RecordingAllocator implements ByteBufferAllocator {
+
+        volatile int maxCapacity;
+
+        @Override
+        public ByteBuffer allocate(int capacity) {
+            maxCapacity = Math.max(maxCapacity, capacity);
+            return ByteBuffer.allocate(capacity);
+        }
+
+        @Override
+        public void release(ByteBuffer buffer) {
+        }
+
+    }
+
+    /**
+     * 记录回调，所有回调都在 WorkerThread 中执行，测试线程在 call 返回之后读取
+     */
+    static class RecordingCallback implements WsCallback {
+
+        final List<WsContext> opened = new ArrayList<>();
+        final List<byte[]> messages = new ArrayList<>();
+        final List<Integer> closeCodes = new ArrayList<>();
+        int writabilityChanges;
+
+        @Override
+        public void onOpen(WsContext context) {
+            opened.add(context);
+        }
+
+        @Override
+        public WsPayload onMessage(WsContext context, WsPayload wsPayload) {
+            ByteBuffer buffer = wsPayload.getBuffer();
+            byte[] data = new byte[buffer.remaining()];
+            buffer.duplicate().get(data);
+            messages.add(data);
+            return null;
+        }
+
+        @Override
+        public void onClose(WsContext context) {
+        }
+
+        @Override
+        public void onClose(WsContext context, int code, String reason) {
+            closeCodes.add(code);
+        }
+
+        @Override
+        public void onWritabilityChanged(WsContext context) {
+            writabilityChanges++;
+        }
+
+    }
+
+}